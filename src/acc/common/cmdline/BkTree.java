@@ -0,0 +1,129 @@
+package acc.common.cmdline;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Burkhard-Keller tree of names indexed by the Levenshtein distance. It's used to find names similar
+ * to a misspelled one without computing the distance to each name, since the triangle inequality allows
+ * to skip whole subtrees.
+ * Objects of this class are not modified after they are built, so they can be searched concurrently.
+ */
+final class BkTree {
+    /**
+     * Root node of the tree, null if the tree is empty.
+     */
+    private Node _root;
+
+    /**
+     * Adds a name to the tree (duplicate names are ignored).
+     * @param name Name to add
+     */
+    void add(String name) {
+        if (name == null || name.length() == 0) {
+            return;
+        }
+        if (this._root == null) {
+            this._root = new Node(name);
+            return;
+        }
+
+        Node node = this._root;
+        while (true) {
+            int distance = distance(node.Name, name);
+            if (distance == 0) {
+                return;
+            }
+            if (node.Children == null) {
+                node.Children = new HashMap<Integer, Node>();
+            }
+            Node child = node.Children.get(distance);
+            if (child == null) {
+                node.Children.put(distance, new Node(name));
+                return;
+            }
+            node = child;
+        }
+    }
+
+    /**
+     * Finds the names within the specified distance of the name.
+     * @param name Name to search for
+     * @param maxDistance Maximal Levenshtein distance
+     * @return List of names ordered by the distance and then alphabetically
+     */
+    List<String> search(String name, int maxDistance) {
+        if (this._root == null) {
+            return Collections.emptyList();
+        }
+
+        final Map<String, Integer> distances = new HashMap<String, Integer>();
+        List<Node> pending = new ArrayList<Node>();
+        pending.add(this._root);
+        while (!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            int distance = distance(node.Name, name);
+            if (distance <= maxDistance) {
+                distances.put(node.Name, distance);
+            }
+            if (node.Children != null) {
+                for (Map.Entry<Integer, Node> entry : node.Children.entrySet()) {
+                    if (Math.abs(entry.getKey() - distance) <= maxDistance) {
+                        pending.add(entry.getValue());
+                    }
+                }
+            }
+        }
+
+        List<String> result = new ArrayList<String>(distances.keySet());
+        Collections.sort(result, new Comparator<String>() {
+            public int compare(String first, String second) {
+                int difference = distances.get(first) - distances.get(second);
+                return difference != 0 ? difference : first.compareTo(second);
+            }
+        });
+        return result;
+    }
+
+    /**
+     * Computes the Levenshtein distance of two strings.
+     * @param first First string
+     * @param second Second string
+     * @return Number of single character insertions, deletions and substitutions
+     */
+    static int distance(String first, String second) {
+        int[] previous = new int[second.length() + 1];
+        int[] current = new int[second.length() + 1];
+        for (int j = 0; j <= second.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= first.length(); i++) {
+            current[0] = i;
+            char c = first.charAt(i - 1);
+            for (int j = 1; j <= second.length(); j++) {
+                int cost = c == second.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return previous[second.length()];
+    }
+
+    /**
+     * Helper class holding a node of the tree.
+     */
+    private static class Node {
+        public String Name;
+        public Map<Integer, Node> Children;
+
+        public Node(String name) {
+            this.Name = name;
+        }
+    }
+}
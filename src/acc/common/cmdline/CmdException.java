@@ -1,9 +1,30 @@
 package acc.common.cmdline;
 
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+
 /**
  * The class {@code CmdException} indicates the error in command line arguments.
+ * Errors caused by invalid user input don't capture the stack trace, since they are expected and frequent
+ * (e.g. when dispatching batches of command lines). Other errors capture it as usual.
  */
 public class CmdException extends Exception {
+    /**
+     * Error codes of invalid user input, which don't capture the stack trace.
+     */
+    private static final Set<CmdExceptionCode> InputErrorCodes = EnumSet.of(
+            CmdExceptionCode.DISPATCH_UNKNOWN_COMMAND,
+            CmdExceptionCode.DISPATCH_NO_COMMAND,
+            CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER,
+            CmdExceptionCode.DISPATCH_EMPTY_PARAMETER,
+            CmdExceptionCode.DISPATCH_UNKNOWN_PARAMETER,
+            CmdExceptionCode.DISPATCH_VALIDATION_ERROR,
+            CmdExceptionCode.DISPATCH_INVALID_SYNTAX,
+            CmdExceptionCode.DISPATCH_AMBIGUOUS_ABBREVIATION,
+            CmdExceptionCode.DISPATCH_CONSTRAINT_VIOLATION);
+
     /**
      * Additional error code.
      */
@@ -14,6 +35,11 @@ public class CmdException extends Exception {
      */
     private String _invalidArgument;
 
+    /**
+     * Names similar to the invalid argument.
+     */
+    private List<String> _suggestions = Collections.emptyList();
+
     /**
      * Constructor of the class.
      * @param code Additional error code
@@ -33,6 +59,7 @@ public class CmdException extends Exception {
         super(message);
         this._code = code;
         this._invalidArgument = invalidArgument;
+        this.captureStackTrace();
     }
 
     /**
@@ -56,6 +83,38 @@ public class CmdException extends Exception {
         super(message, innerException);
         this._code = code;
         this._invalidArgument = invalidArgument;
+        this.captureStackTrace();
+    }
+
+    /**
+     * Constructor of the class.
+     * @param code Additional error code
+     * @param invalidArgument Argument name which caused the exception
+     * @param message Exception message
+     * @param suggestions Names similar to the invalid argument
+     */
+    public CmdException(CmdExceptionCode code, String invalidArgument, String message, List<String> suggestions) {
+        this(code, invalidArgument, message);
+        this._suggestions = Collections.unmodifiableList(suggestions);
+    }
+
+    /**
+     * Doesn't capture the stack trace when the exception is created, since the error code is not known yet.
+     * The stack trace is captured by the constructor unless the error is caused by invalid user input.
+     * @return This exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+
+    /**
+     * Captures the stack trace unless the error is caused by invalid user input.
+     */
+    private void captureStackTrace() {
+        if (!InputErrorCodes.contains(this._code)) {
+            super.fillInStackTrace();
+        }
     }
 
     /**
@@ -73,4 +132,12 @@ public class CmdException extends Exception {
     public String getInvalidArgument() {
         return this._invalidArgument;
     }
+
+    /**
+     * Returns names similar to the invalid argument (e.g. commands or options with a similar name).
+     * @return List of suggested names ordered by the similarity, empty if there are no suggestions
+     */
+    public List<String> getSuggestions() {
+        return this._suggestions;
+    }
 }
@@ -1,7 +1,8 @@
 package acc.common.cmdline;
 
 /**
- * Defines error codes returned by CmdParser.
+ * Defines error codes returned by CmdParser. New codes are appended at the end, so the ordinals
+ * of the existing codes don't change.
  */
 public enum CmdExceptionCode {
     PARSE_DUPLICATE_DEFAULT_COMMAND,
@@ -15,4 +16,15 @@ public enum CmdExceptionCode {
     DISPATCH_EMPTY_PARAMETER,
     DISPATCH_UNKNOWN_PARAMETER,
     DISPATCH_VALIDATION_ERROR,
+    PARSE_INVALID_COMMAND_GROUP,
+    DISPATCH_TIMEOUT,
+    DISPATCH_REJECTED,
+    DISPATCH_CANCELLED,
+    DISPATCH_INVALID_SYNTAX,
+    DISPATCH_AMBIGUOUS_ABBREVIATION,
+    PARSE_UNSUPPORTED_PARAMETER_TYPE,
+    DISPATCH_IO_ERROR,
+    PARSE_INVALID_VALIDATOR,
+    PARSE_INVALID_CONSTRAINT,
+    DISPATCH_CONSTRAINT_VIOLATION,
 }
@@ -1,15 +1,61 @@
 package acc.common.cmdline;
 
 import acc.common.cmdline.annotation.*;
+import acc.common.cmdline.collections.IntList;
+import acc.common.cmdline.collections.IntSet;
+import acc.common.cmdline.collections.LongList;
+import acc.common.cmdline.collections.LongSet;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
 import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * Implements parser and dispatcher for command line arguments.
@@ -19,12 +65,27 @@ public class CmdParser {
      * Line separator string (platform independent).
      */
     private static final String LineSeparator = System.getProperty("line.separator");
+
+    /**
+     * Placeholder for a value bound later to a prepared command.
+     */
+    private static final String Placeholder = "?";
+
+    /**
+     * Argument separating commands of a pipeline.
+     */
+    static final String PipelineSeparator = ";;";
     
     /**
      * Object to which the command line arguments will be dispatched to.
      */
     private Object _impl;
 
+    /**
+     * Class defining the command line.
+     */
+    private Class<?> _type;
+
     /**
      * List of available commands.
      */
@@ -40,16 +101,116 @@ public class CmdParser {
      */
     private List<GlobalParameter> _globalParameters;
 
+    /**
+     * Command groups indexed by the full and short names.
+     */
+    private Map<String, Group> _groups;
+
+    /**
+     * List of available command groups.
+     */
+    private List<Group> _groupList;
+
+    /**
+     * Executor running commands with a deadline (created when needed).
+     */
+    private ExecutorService _executor;
+
+    /**
+     * Lock held by parallel segments of a pipeline while they set the global parameters and run the command.
+     */
+    private final Object _globalLock = new Object();
+
+    /**
+     * Validators shared by parameters with the same validation settings.
+     */
+    private Map<IValidator, IValidator> _validators;
+
+    /**
+     * Constraints between global parameters checked when a command group is dispatched, null if there are none.
+     */
+    private ConstraintSet _globalConstraints;
+
+    /**
+     * Index of the command and command group names used for suggestions (created on the first unknown command).
+     */
+    private BkTree _commandNameTree;
+
+    /**
+     * Index of the global option names used for suggestions (created on the first unknown option).
+     */
+    private BkTree _globalNameTree;
+
+    /**
+     * Index of the command and command group names (created when a command is resolved for the first time).
+     */
+    private volatile RadixTree<Object> _commandTree;
+
+    /**
+     * Index of the global option names (created when a command group is used for the first time).
+     */
+    private volatile RadixTree<Parameter> _globalOptionTree;
+
+    /**
+     * Flag whether unique prefixes of command and option names are accepted.
+     */
+    private volatile boolean _allowAbbreviations;
+
     /**
      * Constructor of the parser class.
      * @param impl Object to which the command line arguments will be dispatched to
      * @throws CmdException Thrown when the definition of command line is invalid
      */
     public CmdParser(Object impl) throws CmdException {
+        this(impl.getClass(), null);
+        this._impl = impl;
+    }
+
+    /**
+     * Constructor of the parser class, which stores the definition of command line in a cache file.
+     * When the cache file matches the class of the object, the definition is loaded from the file and
+     * the methods and fields are looked up only when they are used. Otherwise the definition is created
+     * from annotations and the cache file is (re)written.
+     * @param impl Object to which the command line arguments will be dispatched to
+     * @param schemaCache Cache file with the definition of command line
+     * @throws CmdException Thrown when the definition of command line is invalid
+     */
+    public CmdParser(Object impl, File schemaCache) throws CmdException {
+        this(impl.getClass(), schemaCache);
         this._impl = impl;
+    }
+
+    /**
+     * Constructor of the parser class, also used for command groups, where the handler object is obtained
+     * only when a command is executed.
+     * @param type Class with annotations defining the command line
+     * @param schemaCache Cache file with the definition of command line, null if not used
+     * @throws CmdException Thrown when the definition of command line is invalid
+     */
+    private CmdParser(Class type, File schemaCache) throws CmdException {
+        this._type = type;
+        this.clearSchema();
+        if (schemaCache != null && this.loadSchema(schemaCache)) {
+            return;
+        }
+
+        initParser(type);
+        if (schemaCache != null) {
+            this.saveSchema(schemaCache);
+        }
+    }
+
+    /**
+     * Clears the definition of command line.
+     */
+    private void clearSchema() {
         this._commands = new ArrayList<Command>();
+        this._defaultCommand = null;
         this._globalParameters = new ArrayList<GlobalParameter>();
-        initParser(impl.getClass());
+        this._groups = new HashMap<String, Group>();
+        this._groupList = new ArrayList<Group>();
+        this._validators = new HashMap<IValidator, IValidator>();
+        this._globalConstraints = null;
     }
 
     /**
@@ -59,15 +220,209 @@ public class CmdParser {
      */
     private void initParser(Class type) throws CmdException {
         for (Method method : type.getDeclaredMethods()) {
+            if (method.getAnnotation(CommandGroup.class) != null) {
+                if (method.getParameterTypes().length > 0) {
+                    throw new CmdException(CmdExceptionCode.PARSE_INVALID_COMMAND_GROUP, method.getName(), "Method providing a command group cannot have parameters");
+                }
+                this.addGroup(method.getName(), method, method.getReturnType(), method.getAnnotation(Name.class));
+                continue;
+            }
             this.addCommandFromMethod(method);
         }
 
         for (Field field : type.getFields()) {
+            if (field.getAnnotation(CommandGroup.class) != null) {
+                this.addGroup(field.getName(), field, field.getType(), field.getAnnotation(Name.class));
+                continue;
+            }
             GlobalParameter parameter = new GlobalParameter();
             parameter.Field = field;
-            parameter.Parameter = this.createParameterForCommand(field.getType(), field.getAnnotations());
+            parameter.FieldName = field.getName();
+            parameter.Parameter = this.createParameterForCommand(field.getDeclaringClass(), field.getType(), field.getGenericType(), field.getAnnotations());
             this._globalParameters.add(parameter);
         }
+
+        this.compileConstraints();
+    }
+
+    /**
+     * Assigns bits of the present options mask to the parameters and compiles the constraints of each command.
+     * Global parameters use the lowest bits, so they have the same bits in all commands.
+     * @throws CmdException Thrown when a constraint refers to an unknown option
+     */
+    private void compileConstraints() throws CmdException {
+        Parameter[] globals = new Parameter[this._globalParameters.size()];
+        for (int i = 0; i < globals.length; i++) {
+            globals[i] = this._globalParameters.get(i).Parameter;
+            globals[i].Bit = i;
+        }
+
+        // Groups shared with options of commands are checked only when a command is dispatched
+        Set<String> commandGroups = new HashSet<String>();
+        for (Command command : this._commands) {
+            for (int i = 0; i < command.Parameters.length; i++) {
+                Parameter parameter = command.Parameters[i];
+                parameter.Bit = globals.length + i;
+                if (parameter.Constraints != null) {
+                    for (Constraint constraint : parameter.Constraints) {
+                        if (constraint.Kind != ConstraintSet.Requires) {
+                            commandGroups.add(constraint.Name);
+                        }
+                    }
+                }
+            }
+        }
+
+        this._globalConstraints = buildConstraints(globals, new Parameter[0], commandGroups);
+        for (Command command : this._commands) {
+            command.Constraints = buildConstraints(globals, command.Parameters, Collections.<String>emptySet());
+        }
+    }
+
+    /**
+     * Compiles the constraints declared by the parameters into bit mask rules.
+     * @param globals Global parameters
+     * @param parameters Parameters of the command (empty when compiling the constraints of global parameters)
+     * @param excludedGroups Names of the groups, which are not compiled
+     * @return Compiled rules, null if there are no constraints
+     * @throws CmdException Thrown when a constraint refers to an unknown option
+     */
+    private static ConstraintSet buildConstraints(Parameter[] globals, Parameter[] parameters, Set<String> excludedGroups) throws CmdException {
+        Parameter[] all = new Parameter[globals.length + parameters.length];
+        System.arraycopy(globals, 0, all, 0, globals.length);
+        System.arraycopy(parameters, 0, all, globals.length, parameters.length);
+        int wordCount = (all.length >>> 6) + 1;
+
+        String[] labels = new String[all.length];
+        Map<String, Integer> bits = new HashMap<String, Integer>();
+        int unnamedIndex = 0;
+        boolean hasConstraints = false;
+        for (int i = 0; i < all.length; i++) {
+            Parameter parameter = all[i];
+            labels[i] = parameter.IsUnnamed ? "arg" + unnamedIndex++ : "--" + parameter.Name;
+            if (!parameter.IsUnnamed) {
+                bits.put(parameter.Name, i);
+                if (parameter.ShortName != null && parameter.ShortName.length() > 0) {
+                    bits.put(parameter.ShortName, i);
+                }
+            }
+            hasConstraints |= parameter.Constraints != null;
+        }
+        if (!hasConstraints) {
+            return null;
+        }
+
+        ConstraintSet constraints = new ConstraintSet();
+        Map<String, long[]> groupMasks = new LinkedHashMap<String, long[]>();
+        Map<String, StringBuilder> groupLabels = new HashMap<String, StringBuilder>();
+        for (int i = 0; i < all.length; i++) {
+            if (all[i].Constraints == null) {
+                continue;
+            }
+            for (Constraint constraint : all[i].Constraints) {
+                if (constraint.Kind == ConstraintSet.Requires) {
+                    Integer bit = bits.get(constraint.Name);
+                    if (bit == null || (i < globals.length && bit >= globals.length)) {
+                        throw new CmdException(CmdExceptionCode.PARSE_INVALID_CONSTRAINT, constraint.Name, "Required option is not defined");
+                    }
+                    long[] mask = new long[wordCount];
+                    ConstraintSet.set(mask, bit);
+                    constraints.add(ConstraintSet.Requires, i, mask, all[i].Name, "Option " + labels[i] + " requires " + labels[bit]);
+                    continue;
+                }
+                if (excludedGroups.contains(constraint.Name)) {
+                    continue;
+                }
+
+                String key = constraint.Kind + ":" + constraint.Name;
+                long[] mask = groupMasks.get(key);
+                if (mask == null) {
+                    mask = new long[wordCount];
+                    groupMasks.put(key, mask);
+                    groupLabels.put(key, new StringBuilder());
+                }
+                ConstraintSet.set(mask, i);
+                StringBuilder builder = groupLabels.get(key);
+                if (builder.length() > 0) {
+                    builder.append(", ");
+                }
+                builder.append(labels[i]);
+            }
+        }
+
+        for (Map.Entry<String, long[]> entry : groupMasks.entrySet()) {
+            String key = entry.getKey();
+            int kind = Integer.parseInt(key.substring(0, key.indexOf(':')));
+            String name = key.substring(key.indexOf(':') + 1);
+            String message;
+            if (kind == ConstraintSet.Exclusive) {
+                message = "Options " + groupLabels.get(key) + " cannot be used together";
+            }
+            else if (kind == ConstraintSet.AtLeastOne) {
+                message = "At least one of the options " + groupLabels.get(key) + " must be specified";
+            }
+            else {
+                message = "Exactly one of the options " + groupLabels.get(key) + " must be specified";
+            }
+            constraints.add(kind, -1, entry.getValue(), name, message);
+        }
+        return constraints.isEmpty() ? null : constraints;
+    }
+
+    /**
+     * Adds a command group provided by the specified field or method.
+     * @param memberName Name of the field or method (used when the group has no name defined)
+     * @param accessor Field or method providing the handler object
+     * @param handlerType Type of the handler object
+     * @param nameAnnotation Name annotation of the group, may be null
+     * @throws CmdException Thrown when the definition of command line is invalid
+     */
+    private void addGroup(String memberName, AccessibleObject accessor, Class handlerType, Name nameAnnotation) throws CmdException {
+        if (handlerType.isPrimitive() || handlerType.isArray()) {
+            throw new CmdException(CmdExceptionCode.PARSE_INVALID_COMMAND_GROUP, memberName, "Command group must be provided by an object");
+        }
+
+        Group group = new Group();
+        group.Name = memberName.toLowerCase();
+        group.ShortName = "";
+        group.Description = "";
+        group.Accessor = accessor;
+        group.MemberName = memberName;
+        group.IsMethod = accessor instanceof Method;
+        group.HandlerType = handlerType;
+        if (nameAnnotation != null) {
+            if (nameAnnotation.name().length() > 0) {
+                group.Name = nameAnnotation.name().toLowerCase();
+            }
+            group.ShortName = nameAnnotation.shortName().toLowerCase();
+            group.Description = nameAnnotation.description();
+        }
+
+        if (this.isNameUsed(group.Name) || this.isNameUsed(group.ShortName)) {
+            throw new CmdException(CmdExceptionCode.PARSE_DUPLICATE_COMMAND_NAME, group.Name, "Duplicate command names are not allowed");
+        }
+        this._groups.put(group.Name, group);
+        if (group.ShortName.length() > 0) {
+            this._groups.put(group.ShortName, group);
+        }
+        this._groupList.add(group);
+    }
+
+    /**
+     * Checks whether the specified name is already used by a command or a command group.
+     * @param name Full or short name
+     * @return True if the name is already used
+     */
+    private boolean isNameUsed(String name) {
+        if (name == null || name.trim().length() == 0) {
+            return false;
+        }
+        for (Command command : this._commands) {
+            if (name.equals(command.Name) || name.equals(command.ShortName)) {
+                return true;
+            }
+        }
+        return this._groups.containsKey(name);
     }
 
     /**
@@ -77,17 +432,17 @@ public class CmdParser {
      */
     private void addCommandFromMethod(Method method) throws CmdException {
         Command command = new Command();
-        command.Name = method.getName().toLowerCase();
-        command.Method = method;
+        command.Name = intern(method.getName().toLowerCase());
+        command.MethodName = intern(method.getName());
 
         Annotation annotation = method.getAnnotation(Name.class);
         if (annotation != null) {
             Name nameAnnotation = (Name)annotation;
             if (nameAnnotation.name() != null) {
-                command.Name = nameAnnotation.name().toLowerCase();
+                command.Name = intern(nameAnnotation.name().toLowerCase());
             }
-            command.ShortName = nameAnnotation.shortName().toLowerCase();
-            command.Description = nameAnnotation.description();
+            command.ShortName = intern(nameAnnotation.shortName().toLowerCase());
+            command.Description = intern(nameAnnotation.description());
         }
 
         annotation = method.getAnnotation(Help.class);
@@ -95,15 +450,45 @@ public class CmdParser {
             command.IsHelp = true;
         }
 
-        int paramCount = method.getGenericParameterTypes().length;
+        annotation = method.getAnnotation(Timeout.class);
+        if (annotation != null) {
+            command.Timeout = ((Timeout)annotation).value();
+        }
+
+        annotation = method.getAnnotation(MaxConcurrency.class);
+        if (annotation != null) {
+            command.MaxConcurrency = ((MaxConcurrency)annotation).value();
+            command.Bulkhead = new Semaphore(command.MaxConcurrency);
+        }
+
+        Type[] genericParamTypes = method.getGenericParameterTypes();
+        int paramCount = genericParamTypes.length;
         Class[] paramTypes = method.getParameterTypes();
         Annotation[][] paramAnnotations = method.getParameterAnnotations();
-        command.Parameters = new ArrayList<Parameter>(paramCount);
+        List<Parameter> parameters = new ArrayList<Parameter>(paramCount);
+        List<OptionsHolder> holders = null;
         for (int i = 0; i < paramCount; i++) {
-            command.Parameters.add(this.createParameterForCommand(paramTypes[i], paramAnnotations[i]));
+            if (hasAnnotation(paramAnnotations[i], Options.class)) {
+                if (holders == null) {
+                    holders = new ArrayList<OptionsHolder>();
+                }
+                holders.add(this.addOptionsHolder(i, paramTypes[i], parameters));
+                continue;
+            }
+            parameters.add(this.createParameterForCommand(method.getDeclaringClass(), paramTypes[i], genericParamTypes[i], paramAnnotations[i]));
+        }
+        command.Parameters = parameters.toArray(new Parameter[parameters.size()]);
+        if (holders != null) {
+            command.Holders = holders.toArray(new OptionsHolder[holders.size()]);
+        }
+        command.OutputIndex = findOutputIndex(command.Parameters);
+        for (int i = command.OutputIndex + 1; command.OutputIndex >= 0 && i < command.Parameters.length; i++) {
+            if (command.Parameters[i].Type.equals(CommandOutput.class)) {
+                throw new CmdException(CmdExceptionCode.PARSE_UNSUPPORTED_PARAMETER_TYPE, command.Name, "Only one output parameter is allowed");
+            }
         }
 
-        if (this.findCommand(command.Name) != null || this.findCommand(command.ShortName) != null) {
+        if (this.isNameUsed(command.Name) || this.isNameUsed(command.ShortName)) {
             throw new CmdException(CmdExceptionCode.PARSE_DUPLICATE_COMMAND_NAME, command.Name, "Duplicate command names are not allowed");
         }
         this._commands.add(command);
@@ -117,64 +502,348 @@ public class CmdParser {
         }
     }
 
+    /**
+     * Adds the options of an options holder to the parameters of a command.
+     * @param index Position of the holder parameter in the command's method
+     * @param type Type of the holder
+     * @param parameters List of parameters of the command
+     * @return Options holder
+     * @throws CmdException Thrown when the definition of the holder is invalid
+     */
+    private OptionsHolder addOptionsHolder(int index, Class type, List<Parameter> parameters) throws CmdException {
+        Constructor<?>[] constructors = type.getConstructors();
+        if (constructors.length != 1) {
+            throw new CmdException(CmdExceptionCode.PARSE_UNSUPPORTED_PARAMETER_TYPE, type.getSimpleName(), "Options holder must have a single public constructor");
+        }
+
+        OptionsHolder holder = new OptionsHolder();
+        holder.Index = index;
+        holder.First = parameters.size();
+        holder.Type = type;
+        holder.Constructor = constructors[0];
+        Type[] genericParamTypes = holder.Constructor.getGenericParameterTypes();
+        Class[] paramTypes = holder.Constructor.getParameterTypes();
+        Annotation[][] paramAnnotations = holder.Constructor.getParameterAnnotations();
+        for (int i = 0; i < paramTypes.length; i++) {
+            if (hasAnnotation(paramAnnotations[i], Options.class)) {
+                throw new CmdException(CmdExceptionCode.PARSE_UNSUPPORTED_PARAMETER_TYPE, type.getSimpleName(), "Options holders cannot be nested");
+            }
+            parameters.add(this.createParameterForCommand(type, paramTypes[i], genericParamTypes[i], paramAnnotations[i]));
+        }
+        holder.Count = paramTypes.length;
+        return holder;
+    }
+
+    /**
+     * Checks whether the annotations contain an annotation of the specified type.
+     * @param annotations Annotations of a parameter
+     * @param annotationType Type of the annotation
+     * @return True if the annotation is present
+     */
+    private static boolean hasAnnotation(Annotation[] annotations, Class annotationType) {
+        for (Annotation annotation : annotations) {
+            if (annotation.annotationType() == annotationType) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Creates a Parameter object for a command based on the parameter type and parameter annotations.
+     * @param owner Class declaring the parameter (resources of the validators are resolved relative to it)
      * @param parameterType Type of the parameter
+     * @param genericType Generic type of the parameter (to resolve types of collection elements)
      * @param annotations Annotations of the parameter
      * @return Parameter object
      * @throws CmdException Thrown when the definition of command line is invalid
      */
-    private Parameter createParameterForCommand(Class parameterType, Annotation[] annotations) throws CmdException {
+    private Parameter createParameterForCommand(Class owner, Class parameterType, Type genericType, Annotation[] annotations) throws CmdException {
         Parameter param = new Parameter();
         param.Type = parameterType;
+        if (parameterType.equals(CommandOutput.class)) {
+            // Output buffer is provided by the parser for each invocation
+            return param;
+        }
+        if (parameterType.equals(Lazy.class)) {
+            // Value is converted when it's used for the first time
+            param.IsLazy = true;
+            genericType = getLazyValueType(genericType);
+            param.Type = getRawType(genericType);
+        }
+        resolveElementTypes(param, genericType);
         for (Annotation annotation : annotations) {
             if (annotation.annotationType() == Name.class) {
                 Name name = (Name)annotation;
                 if (name.name() == null || name.name().trim().length() == 0) {
                     throw new CmdException(CmdExceptionCode.PARSE_PARAM_NAME_UNDEFINED, "Undefined parameter name");
                 }
-                param.Name = name.name().toLowerCase();
+                param.Name = intern(name.name().toLowerCase());
                 if (name.shortName() != null) {
-                    param.ShortName = name.shortName().toLowerCase();
+                    param.ShortName = intern(name.shortName().toLowerCase());
                 }
-                param.Description = name.description();
+                param.Description = intern(name.description());
             }
             else if (annotation.annotationType() == Unnamed.class) {
                 Unnamed unnamed = (Unnamed)annotation;
                 param.IsUnnamed = true;
-                param.Description = unnamed.description();
+                param.Description = intern(unnamed.description());
             }
             else if (annotation.annotationType() == DefaultValue.class) {
                 DefaultValue defaultValue = (DefaultValue)annotation;
-                param.DefaultValue = defaultValue.value();
+                param.DefaultValue = intern(defaultValue.value());
             }
             else if (annotation.annotationType() == Required.class) {
                 param.IsRequired = true;
             }
+            else if (annotation.annotationType() == Prefetch.class) {
+                param.IsPrefetch = true;
+            }
             else if (annotation.annotationType() == NonEmpty.class) {
-                param.Validator = new NonEmptyValidator();
+                param.Validator = this.shareValidator(new NonEmptyValidator());
             }
             else if (annotation.annotationType() == Regex.class) {
                 Regex regex = (Regex)annotation;
-                param.Validator = new RegexValidator(regex.value());
+                try {
+                    param.Validator = this.shareValidator(new RegexValidator(regex.value()));
+                } catch (PatternSyntaxException e) {
+                    throw new CmdException(CmdExceptionCode.PARSE_INVALID_VALIDATOR, regex.value(), "Invalid regex expression", e);
+                }
+            }
+            else if (annotation.annotationType() == OneOf.class) {
+                param.Validator = this.shareValidator(this.createOneOfValidator(owner, (OneOf)annotation));
+            }
+            else if (annotation.annotationType() == Exclusive.class) {
+                param.Constraints = addConstraints(param.Constraints, ConstraintSet.Exclusive, ((Exclusive)annotation).value());
+            }
+            else if (annotation.annotationType() == AtLeastOne.class) {
+                param.Constraints = addConstraints(param.Constraints, ConstraintSet.AtLeastOne, ((AtLeastOne)annotation).value());
+            }
+            else if (annotation.annotationType() == ExactlyOne.class) {
+                param.Constraints = addConstraints(param.Constraints, ConstraintSet.ExactlyOne, ((ExactlyOne)annotation).value());
+            }
+            else if (annotation.annotationType() == Requires.class) {
+                param.Constraints = addConstraints(param.Constraints, ConstraintSet.Requires, ((Requires)annotation).value());
             }
             else if (annotation.annotationType() == LongRange.class) {
                 LongRange range = (LongRange)annotation;
-                param.Validator = new LongValidator(range.min(), range.max());
+                param.Validator = this.shareValidator(new LongValidator(range.min(), range.max()));
             }
             else if (annotation.annotationType() == DoubleRange.class) {
                 DoubleRange range = (DoubleRange)annotation;
-                param.Validator = new DoubleValidator(range.min(), range.max());
+                param.Validator = this.shareValidator(new DoubleValidator(range.min(), range.max()));
             }
         }
 
         if (!param.IsUnnamed && param.Name == null) {
             throw new CmdException(CmdExceptionCode.PARSE_PARAM_NAME_UNDEFINED, "Parameter name must be defined");
         }
+        if (param.IsPrefetch && (param.IsLazy || !(param.Type.equals(MappedByteBuffer.class) || param.Type.equals(Future.class)))) {
+            throw new CmdException(CmdExceptionCode.PARSE_UNSUPPORTED_PARAMETER_TYPE, param.Name, "Prefetched parameter must be of type MappedByteBuffer or Future<MappedByteBuffer>");
+        }
 
         return param;
     }
 
+    /**
+     * Adds constraints of the same kind to the constraints of a parameter.
+     * @param constraints Constraints of the parameter, null if it has no constraints yet
+     * @param kind Kind of the constraints
+     * @param names Names of the groups or of the required options
+     * @return Constraints of the parameter
+     */
+    private static Constraint[] addConstraints(Constraint[] constraints, int kind, String[] names) {
+        int count = constraints != null ? constraints.length : 0;
+        Constraint[] result = constraints != null ? Arrays.copyOf(constraints, count + names.length) : new Constraint[names.length];
+        for (int i = 0; i < names.length; i++) {
+            Constraint constraint = new Constraint();
+            constraint.Kind = kind;
+            constraint.Name = intern(names[i].toLowerCase());
+            result[count + i] = constraint;
+        }
+        return result;
+    }
+
+    /**
+     * Creates a validator of the allowed values, the values are sorted once when the definition is created.
+     * @param owner Class declaring the annotated parameter, the resource is resolved relative to it
+     * @param oneOf Annotation with the allowed values or the resource containing them
+     * @return Validator
+     * @throws CmdException Thrown when the resource could not be read or no values are allowed
+     */
+    private OneOfValidator createOneOfValidator(Class owner, OneOf oneOf) throws CmdException {
+        OneOfValidator validator;
+        if (oneOf.resource().length() > 0) {
+            try {
+                validator = OneOfValidator.load(owner, oneOf.resource(), oneOf.ignoreCase());
+            } catch (IOException e) {
+                throw new CmdException(CmdExceptionCode.PARSE_INVALID_VALIDATOR, oneOf.resource(), "Unable to load allowed values", e);
+            }
+        }
+        else {
+            validator = new OneOfValidator(oneOf.value(), oneOf.ignoreCase());
+        }
+        if (validator.getValues().isEmpty()) {
+            throw new CmdException(CmdExceptionCode.PARSE_INVALID_VALIDATOR, oneOf.resource(), "No allowed values were specified");
+        }
+        return validator;
+    }
+
+    /**
+     * Finds the output parameter of a command.
+     * @param parameters Parameters of the command
+     * @return Position of the output parameter, -1 if the command has no output parameter
+     */
+    private static int findOutputIndex(Parameter[] parameters) {
+        for (int i = 0; i < parameters.length; i++) {
+            if (parameters[i].Type.equals(CommandOutput.class)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns a validator with the same settings already used by another parameter, so large command lines
+     * don't hold a separate validator for each parameter.
+     * @param validator Validator of a parameter
+     * @return Shared validator with the same settings
+     */
+    private IValidator shareValidator(IValidator validator) {
+        IValidator shared = this._validators.get(validator);
+        if (shared == null) {
+            this._validators.put(validator, validator);
+            shared = validator;
+        }
+        return shared;
+    }
+
+    /**
+     * Returns the canonical representation of the string, so equal names and descriptions used
+     * by many commands are stored only once.
+     * @param value String value, may be null
+     * @return Canonical representation of the string, null if the value is null
+     */
+    private static String intern(String value) {
+        return value != null ? value.intern() : null;
+    }
+
+    /**
+     * Resolves types of elements (and keys) of collection and map parameters.
+     * Primitive wrappers are resolved to primitive types, raw collections have elements of String type.
+     * @param param Parameter object
+     * @param genericType Generic type of the parameter
+     */
+    private static void resolveElementTypes(Parameter param, Type genericType) {
+        Class type = param.Type;
+        if (type.equals(IntList.class) || type.equals(IntSet.class)) {
+            param.ElementType = int.class;
+        } else if (type.equals(LongList.class) || type.equals(LongSet.class)) {
+            param.ElementType = long.class;
+        } else if (Map.class.isAssignableFrom(type)) {
+            param.KeyType = getTypeArgument(genericType, 0);
+            param.ElementType = getTypeArgument(genericType, 1);
+        } else if (Collection.class.isAssignableFrom(type)) {
+            param.ElementType = getTypeArgument(genericType, 0);
+        }
+    }
+
+    /**
+     * Returns the type argument of a generic type.
+     * @param genericType Generic type
+     * @param index Index of the type argument
+     * @return Type argument (primitive type for primitive wrappers), String for raw types,
+     * Object if the type argument is not a class
+     */
+    private static Class getTypeArgument(Type genericType, int index) {
+        if (!(genericType instanceof ParameterizedType)) {
+            return String.class;
+        }
+
+        Type[] typeArguments = ((ParameterizedType)genericType).getActualTypeArguments();
+        if (index >= typeArguments.length || !(typeArguments[index] instanceof Class)) {
+            return Object.class;
+        }
+        return getPrimitiveType((Class)typeArguments[index]);
+    }
+
+    /**
+     * Returns the type of the value of a lazy parameter.
+     * @param genericType Generic type of the parameter
+     * @return Type of the value, String if the type is not specified
+     */
+    private static Type getLazyValueType(Type genericType) {
+        if (genericType instanceof ParameterizedType) {
+            return ((ParameterizedType)genericType).getActualTypeArguments()[0];
+        }
+        return String.class;
+    }
+
+    /**
+     * Returns the class of a type, primitive wrappers are resolved to primitive types.
+     * @param type Type
+     * @return Class of the type, String if the type is not a class or a parameterized class
+     */
+    private static Class getRawType(Type type) {
+        if (type instanceof ParameterizedType) {
+            type = ((ParameterizedType)type).getRawType();
+        }
+        if (type instanceof Class) {
+            return getPrimitiveType((Class)type);
+        }
+        return String.class;
+    }
+
+    /**
+     * Returns the primitive type for a primitive wrapper type.
+     * @param clazz Type
+     * @return Primitive type if the type is a primitive wrapper, otherwise the type itself
+     */
+    private static Class getPrimitiveType(Class clazz) {
+        if (clazz.equals(Integer.class)) {
+            return int.class;
+        } else if (clazz.equals(Long.class)) {
+            return long.class;
+        } else if (clazz.equals(Double.class)) {
+            return double.class;
+        } else if (clazz.equals(Boolean.class)) {
+            return boolean.class;
+        } else if (clazz.equals(Float.class)) {
+            return float.class;
+        } else if (clazz.equals(Short.class)) {
+            return short.class;
+        } else if (clazz.equals(Byte.class)) {
+            return byte.class;
+        } else {
+            return clazz;
+        }
+    }
+
+    /**
+     * Returns whether unique prefixes of command and option names are accepted.
+     * @return True if abbreviations are allowed
+     */
+    public boolean isAllowAbbreviations() {
+        return this._allowAbbreviations;
+    }
+
+    /**
+     * Sets whether unique prefixes of command and option names are accepted (e.g. "comp" for "complex"),
+     * similarly to GNU getopt_long. Exact names always take precedence over abbreviations.
+     * The setting applies also to the command groups.
+     * @param allowAbbreviations True if abbreviations are allowed
+     */
+    public void setAllowAbbreviations(boolean allowAbbreviations) {
+        this._allowAbbreviations = allowAbbreviations;
+        for (Group group : this._groupList) {
+            synchronized (group) {
+                if (group.Parser != null) {
+                    group.Parser.setAllowAbbreviations(allowAbbreviations);
+                }
+            }
+        }
+    }
+
     /**
      * Helper method showing how to use CmdParser class.
      * @param args Command line arguments
@@ -191,125 +860,1180 @@ public class CmdParser {
     }
 
     /**
-     * Invokes a proper method based on the command line arguments.
+     * Invokes a proper method based on the command line arguments, respecting the deadline and the concurrency
+     * limit of the command.
      * @param args Command line arguments
-     * @throws CmdException Thrown when the definition of command line is invalid
+     * @throws CmdException Thrown when the command line arguments are invalid, the deadline expired
+     * or the concurrency limit of the command was reached
      */
     public void dispatch(String[] args)
             throws CmdException {
-        Command command = null;
-        Map<String, Option> options = new HashMap<String, Option>();
-        ArrayList<String> unnamedOptions = new ArrayList<String>();
-        for (String arg : args) {
-            if (arg.startsWith("-")) {
-                // Option
-                Option option = this.parseOption(arg);
-                options.put(option.Name, option);
-            }
-            else {
-                // Command or Unnamed parameter
-                if (command != null) {
-                    // Command already specified, assuming it's a unnamed parameter
-                    unnamedOptions.add(arg);
-                    continue;
-                }
+        this.dispatch(args, new DispatchOptions());
+    }
 
-                String commandName = arg.toLowerCase();
-                command = this.findCommand(commandName);
-                if (command == null) {
-                    // Unnamed parameters without a command are illegal
-                    throw new CmdException(CmdExceptionCode.DISPATCH_UNKNOWN_COMMAND, arg, "Unknown command");
-                }
-            }
-        }
+    /**
+     * Invokes a proper method based on the command line arguments, respecting the deadline and the concurrency
+     * limit of the command. Commands with a deadline run on the executor and are cancelled by interruption
+     * when the deadline expires, so they should respond to interruption.
+     * @param args Command line arguments
+     * @param options Options of the dispatch
+     * @throws CmdException Thrown when the command line arguments are invalid, the deadline expired
+     * or the concurrency limit of the command was reached
+     */
+    public void dispatch(String[] args, DispatchOptions options)
+            throws CmdException {
+        this.execute(this.parse(args), options);
+    }
 
-        if (command == null && this._defaultCommand == null) {
-            throw new CmdException(CmdExceptionCode.DISPATCH_NO_COMMAND, "No command was specified");
+    /**
+     * Invokes several commands separated by the ";;" argument (e.g. {@code complex --param2=a1 ;; simple})
+     * one after another. All commands are parsed before the first one is invoked.
+     * @param args Command line arguments
+     * @throws CmdException Thrown when the command line arguments are invalid or a command failed
+     */
+    public void dispatchPipeline(String[] args)
+            throws CmdException {
+        this.dispatchPipeline(args, new DispatchOptions());
+    }
+
+    /**
+     * Invokes several commands separated by the ";;" argument. All commands are parsed before the first one
+     * is invoked. Commands run one after another (the first failure stops the pipeline), or in parallel
+     * if requested by the options (all commands run and the failure of the first failed command is reported).
+     * Global parameters are stored in the fields of the shared object, so parallel commands with global parameters
+     * run one at a time.
+     * @param args Command line arguments
+     * @param options Options of the dispatch, applied to each command
+     * @throws CmdException Thrown when the command line arguments are invalid or a command failed
+     */
+    public void dispatchPipeline(String[] args, DispatchOptions options)
+            throws CmdException {
+        this.dispatchPipeline(splitPipeline(args), options);
+    }
+
+    /**
+     * Splits the command line arguments into the arguments of the commands separated by the ";;" argument.
+     * @param args Command line arguments
+     * @return Arguments of each command, empty arrays for empty commands
+     */
+    static List<String[]> splitPipeline(String[] args) {
+        List<String[]> commands = new ArrayList<String[]>(1);
+        int start = 0;
+        for (int i = 0; i <= args.length; i++) {
+            if (i == args.length || args[i].equals(PipelineSeparator)) {
+                commands.add(Arrays.copyOfRange(args, start, i));
+                start = i + 1;
+            }
         }
-        else if (command == null) {
-            command = this._defaultCommand;
+        return commands;
+    }
+
+    /**
+     * Invokes the commands of a pipeline as {@link #dispatchPipeline(String[], DispatchOptions)}.
+     * Empty commands are skipped, unless the pipeline consists of a single command (which is the default command).
+     * @param args Arguments of each command
+     * @param options Options of the dispatch, applied to each command
+     * @throws CmdException Thrown when the command line arguments are invalid or a command failed
+     */
+    void dispatchPipeline(List<String[]> args, final DispatchOptions options)
+            throws CmdException {
+        List<ParsedCommand> commands = new ArrayList<ParsedCommand>(args.size());
+        for (String[] commandArgs : args) {
+            if (commandArgs.length > 0 || args.size() == 1) {
+                commands.add(this.parse(commandArgs));
+            }
         }
 
-        for (Option option : options.values()) {
-            boolean found = false;
-            for (GlobalParameter globalParameter : this._globalParameters) {
-                if (globalParameter.Parameter.Name.equals(option.Name) || globalParameter.Parameter.ShortName.equals(option.Name)) {
-                    found = true;
-                    break;
+        if (!options.isParallel() || commands.size() == 1) {
+            for (ParsedCommand command : commands) {
+                this.execute(command, options);
+            }
+            return;
+        }
+
+        // Segments run on the executor of the parser, so the executor from options is available for deadlines
+        List<Future<Object>> futures = new ArrayList<Future<Object>>(commands.size());
+        final CommandOutput[] outputs = new CommandOutput[commands.size()];
+        for (int i = 0; i < outputs.length; i++) {
+            final ParsedCommand command = commands.get(i);
+            final CommandOutput output = new CommandOutput();
+            outputs[i] = output;
+            futures.add(this.getExecutor().submit(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    execute(command, _impl, options, output, _globalLock);
+                    return null;
                 }
+            }));
+        }
+
+        CmdException error = null;
+        for (Future<Object> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                if (error == null) {
+                    error = e.getCause() instanceof CmdException
+                            ? (CmdException)e.getCause()
+                            : new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, "Unable to invoke command", e.getCause());
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (Future<Object> other : futures) {
+                    other.cancel(true);
+                }
+                throw new CmdException(CmdExceptionCode.DISPATCH_CANCELLED, "Pipeline was cancelled", e);
             }
+        }
 
-            if (!found) {
-                for (Parameter parameter : command.Parameters) {
-                    if (!parameter.IsUnnamed) {
-                        if (parameter.Name.equals(option.Name) || parameter.ShortName.equals(option.Name)) {
-                            found = true;
-                            break;
-                        }
+        // Output is written in the order of the segments, not in the order of completion
+        PrintStream stream = getOutputStream(options);
+        for (CommandOutput output : outputs) {
+            output.writeTo(stream);
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Reads command lines from the file and dispatches them one at a time.
+     * @param file File with command lines (UTF-8 encoded)
+     * @param listener Listener receiving the outcome of each command line
+     * @return Number of command lines which failed
+     * @throws IOException Thrown when the file could not be read
+     */
+    public long dispatchFile(File file, IBatchListener listener)
+            throws IOException {
+        Reader reader = new InputStreamReader(new FileInputStream(file), "UTF-8");
+        try {
+            return this.dispatchStream(reader, new DispatchOptions(), listener);
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Reads command lines from the reader and dispatches them one at a time.
+     * @param reader Reader with command lines
+     * @param listener Listener receiving the outcome of each command line
+     * @return Number of command lines which failed
+     * @throws IOException Thrown when the reader could not be read
+     */
+    public long dispatchStream(Reader reader, IBatchListener listener)
+            throws IOException {
+        return this.dispatchStream(reader, new DispatchOptions(), listener);
+    }
+
+    /**
+     * Reads command lines from the reader and dispatches them one at a time, so the memory needed doesn't depend
+     * on the number of lines. Each line is split into commands and arguments by {@link CmdTokenizer#tokenizePipeline(String)}
+     * and dispatched as a pipeline (a quoted ";;" doesn't separate commands).
+     * Empty lines and lines starting with '#' are skipped. A failed line doesn't stop the batch, the failure
+     * is reported to the listener together with the line number.
+     * @param reader Reader with command lines
+     * @param options Options of the dispatch, applied to each command line
+     * @param listener Listener receiving the outcome of each command line
+     * @return Number of command lines which failed
+     * @throws IOException Thrown when the reader could not be read
+     */
+    public long dispatchStream(Reader reader, DispatchOptions options, IBatchListener listener)
+            throws IOException {
+        BufferedReader bufferedReader = reader instanceof BufferedReader ? (BufferedReader)reader : new BufferedReader(reader);
+        long lineNumber = 0;
+        long failedCount = 0;
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            lineNumber++;
+            String trimmedLine = line.trim();
+            if (trimmedLine.length() == 0 || trimmedLine.charAt(0) == '#') {
+                continue;
+            }
+
+            CmdException error = null;
+            try {
+                this.dispatchPipeline(CmdTokenizer.tokenizePipeline(line), options);
+            } catch (CmdException e) {
+                error = e;
+                failedCount++;
+            }
+            listener.lineCompleted(lineNumber, line, error);
+        }
+        return failedCount;
+    }
+
+    /**
+     * Executes a parsed command, respecting the deadline and the concurrency limit of the command.
+     * Output of the command is written to the output stream of the dispatch when the command completes.
+     * @param command Parsed command
+     * @param options Options of the dispatch
+     * @throws CmdException Thrown when the deadline expired, the concurrency limit of the command was reached
+     * or the command could not be invoked
+     */
+    private void execute(ParsedCommand command, DispatchOptions options) throws CmdException {
+        CommandOutput output = new CommandOutput();
+        try {
+            this.execute(command, this._impl, options, output);
+        } finally {
+            output.writeTo(getOutputStream(options));
+        }
+    }
+
+    /**
+     * Returns the stream receiving the output of the commands.
+     * @param options Options of the dispatch
+     * @return Output stream of the options, System.out if not specified
+     */
+    private static PrintStream getOutputStream(DispatchOptions options) {
+        return options.getOutput() != null ? options.getOutput() : System.out;
+    }
+
+    /**
+     * Executes a parsed command, respecting the deadline and the concurrency limit of the command.
+     * When the deadline expires, the output buffer is closed, so it keeps only the output written before the deadline.
+     * @param command Parsed command
+     * @param impl Object on which the command should be invoked
+     * @param options Options of the dispatch
+     * @param output Buffer collecting the output of the command
+     * @throws CmdException Thrown when the deadline expired, the concurrency limit of the command was reached
+     * or the command could not be invoked
+     */
+    void execute(ParsedCommand command, Object impl, DispatchOptions options, CommandOutput output) throws CmdException {
+        this.execute(command, impl, options, output, null);
+    }
+
+    /**
+     * Executes a parsed command, respecting the deadline and the concurrency limit of the command.
+     * @param command Parsed command
+     * @param impl Object on which the command should be invoked
+     * @param options Options of the dispatch
+     * @param output Buffer collecting the output of the command
+     * @param globalLock Lock held while the global parameters are set and the command runs, null if not needed
+     * @throws CmdException Thrown when the deadline expired, the concurrency limit of the command was reached
+     * or the command could not be invoked
+     */
+    private void execute(final ParsedCommand command, final Object impl, DispatchOptions options, final CommandOutput output, final Object globalLock) throws CmdException {
+        long timeout = options.getTimeout() > 0 ? options.getTimeout() : command.getTimeout();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+        final Semaphore bulkhead = command.getBulkhead();
+        if (bulkhead != null) {
+            // Waiting for the bulkhead only within the deadline, without deadline the command is rejected immediately
+            boolean acquired;
+            try {
+                acquired = bulkhead.tryAcquire(timeout, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CmdException(CmdExceptionCode.DISPATCH_CANCELLED, command.getCommandName(), "Command was cancelled", e);
+            }
+            if (!acquired) {
+                throw new CmdException(CmdExceptionCode.DISPATCH_REJECTED, command.getCommandName(), "Concurrency limit of the command was reached");
+            }
+        }
+
+        if (timeout <= 0) {
+            try {
+                command.invoke(impl, output, globalLock);
+            } finally {
+                if (bulkhead != null) {
+                    bulkhead.release();
+                }
+            }
+            return;
+        }
+
+        // State of the task: 0 = not started, 1 = started, 2 = abandoned before start
+        final AtomicInteger state = new AtomicInteger();
+        Callable<Object> task = new Callable<Object>() {
+            @Override
+            public Object call() throws Exception {
+                if (!state.compareAndSet(0, 1)) {
+                    return null;
+                }
+                try {
+                    command.invoke(impl, output, globalLock);
+                } finally {
+                    if (bulkhead != null) {
+                        bulkhead.release();
                     }
                 }
+                return null;
+            }
+        };
+
+        ExecutorService executor = options.getExecutor() != null ? options.getExecutor() : this.getExecutor();
+        Future<Object> future;
+        try {
+            future = executor.submit(task);
+        } catch (RuntimeException e) {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+            throw new CmdException(CmdExceptionCode.DISPATCH_REJECTED, command.getCommandName(), "Command could not be scheduled", e);
+        }
+
+        CmdException error = null;
+        try {
+            future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            return;
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof CmdException) {
+                throw (CmdException)e.getCause();
+            }
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, "Unable to invoke command", e.getCause());
+        } catch (TimeoutException e) {
+            error = new CmdException(CmdExceptionCode.DISPATCH_TIMEOUT, command.getCommandName(), "Command did not complete within " + timeout + " ms");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = new CmdException(CmdExceptionCode.DISPATCH_CANCELLED, command.getCommandName(), "Command was cancelled", e);
+        }
+
+        // Output of the cancelled command is cut off before the caller writes it, the command may still be running
+        output.close();
+        future.cancel(true);
+        if (state.compareAndSet(0, 2) && bulkhead != null) {
+            bulkhead.release();
+        }
+        throw error;
+    }
+
+    /**
+     * Returns the executor running commands with a deadline, the executor is created when needed.
+     * @return Executor with daemon threads
+     */
+    private synchronized ExecutorService getExecutor() {
+        if (this._executor == null) {
+            this._executor = Executors.newCachedThreadPool(new ThreadFactory() {
+                private final AtomicInteger _counter = new AtomicInteger();
+
+                @Override
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "CmdParser-worker-" + this._counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return this._executor;
+    }
+
+    /**
+     * Dispatches the command line arguments without throwing exceptions for invalid user input.
+     * @param args Command line arguments
+     * @return Result of the dispatch with the error code and message when the dispatch failed
+     */
+    public DispatchResult tryDispatch(String[] args) {
+        return this.tryDispatch(args, new DispatchOptions());
+    }
+
+    /**
+     * Dispatches the command line arguments with the specified options without throwing exceptions for invalid user input.
+     * @param args Command line arguments
+     * @param options Options of the dispatch
+     * @return Result of the dispatch with the error code and message when the dispatch failed,
+     * and with the output of the command when the output is captured
+     */
+    public DispatchResult tryDispatch(String[] args, DispatchOptions options) {
+        CommandOutput output = new CommandOutput();
+        CmdException error = null;
+        try {
+            this.execute(this.parse(args), this._impl, options, output);
+        } catch (CmdException e) {
+            error = e;
+        }
+
+        String text = null;
+        if (options.isCaptureOutput()) {
+            text = output.getText();
+        }
+        else {
+            output.writeTo(getOutputStream(options));
+        }
+        return error == null ? DispatchResult.success(text) : DispatchResult.failure(error, text);
+    }
+
+    /**
+     * Parses the command line arguments without invoking the command.
+     * The returned object is immutable and can be executed later, possibly on a different thread.
+     * @param args Command line arguments
+     * @return Parsed command with converted and validated arguments
+     * @throws CmdException Thrown when the command line arguments are invalid
+     */
+    public ParsedCommand parse(String[] args)
+            throws CmdException {
+        return this.parse(args, null, 0);
+    }
+
+    /**
+     * Prepares a command template, in which the values of options or unnamed parameters may be replaced
+     * with a placeholder (e.g. {@code complex --param1=? --param2=?}). The command and all fixed values are
+     * resolved, converted and validated once, only the placeholders need to be bound later.
+     * @param template Command line arguments with placeholders
+     * @return Prepared command with unbound slots for the placeholders
+     * @throws CmdException Thrown when the command line arguments are invalid
+     */
+    public PreparedCommand prepare(String[] template)
+            throws CmdException {
+        List<PreparedCommand.Slot> slots = new ArrayList<PreparedCommand.Slot>();
+        ParsedCommand parsedCommand = this.parse(template, slots, 0);
+        return new PreparedCommand(parsedCommand, slots);
+    }
+
+    /**
+     * Parses the command line arguments without invoking the command.
+     * @param args Command line arguments
+     * @param slots List collecting the placeholders, null if placeholders are not allowed
+     * @param depth Depth of the command group (0 for top level commands)
+     * @return Parsed command with converted and validated arguments (placeholders are left as null)
+     * @throws CmdException Thrown when the command line arguments are invalid
+     */
+    private ParsedCommand parse(String[] args, List<PreparedCommand.Slot> slots, int depth)
+            throws CmdException {
+        Command command = null;
+        List<Option> optionList = new ArrayList<Option>();
+        ArrayList<String> unnamedOptions = new ArrayList<String>();
+        for (int argIndex = 0; argIndex < args.length; argIndex++) {
+            String arg = args[argIndex];
+            if (arg.startsWith("-")) {
+                // Option
+                optionList.add(parseOption(arg));
             }
+            else {
+                // Command or Unnamed parameter
+                if (command != null) {
+                    // Command already specified, assuming it's a unnamed parameter
+                    unnamedOptions.add(arg);
+                    continue;
+                }
 
-            if (!found) {
-                throw new CmdException(CmdExceptionCode.DISPATCH_UNKNOWN_PARAMETER, option.Name, "Unknown option");
+                Object target = this.resolveCommand(arg);
+                if (target instanceof Group) {
+                    // Remaining arguments belong to the command group
+                    String[] groupArgs = Arrays.copyOfRange(args, argIndex + 1, args.length);
+                    long[] present = new long[(this._globalParameters.size() >>> 6) + 1];
+                    return this.parseGroup((Group)target, groupArgs, this.collectOptions(optionList, null, present), present, slots, depth);
+                }
+                command = (Command)target;
             }
         }
 
-        ArrayList<Object> commandArgs = new ArrayList<Object>();
+        if (command == null && this._defaultCommand == null) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_NO_COMMAND, "No command was specified");
+        }
+        else if (command == null) {
+            command = this._defaultCommand;
+        }
+
+        long[] present = new long[((this._globalParameters.size() + command.Parameters.length) >>> 6) + 1];
+        Map<String, Option> options = this.collectOptions(optionList, command, present);
+        Object[] commandArgs = new Object[command.Parameters.length];
+        this.startPrefetch(command, options, slots, commandArgs);
         int unnamedIndex = 0;
-        for (Parameter parameter : command.Parameters) {
-            Object value;
+        for (int i = 0; i < commandArgs.length; i++) {
+            Parameter parameter = command.Parameters[i];
+            if (commandArgs[i] != null || i == command.OutputIndex) {
+                // Prefetch of the file already started or output buffer provided when the command is executed
+                continue;
+            }
+            String name = parameter.Name;
+            String text = null;
+            boolean specified = true;
             if (parameter.IsUnnamed) {
                 // Unnamed parameter
-                String name = "index=" + unnamedIndex;
+                name = "index=" + unnamedIndex;
                 if (unnamedIndex < unnamedOptions.size()) {
-                    value = getParameterValue(parameter.Type, name, unnamedOptions.get(unnamedIndex));
+                    text = unnamedOptions.get(unnamedIndex);
                     unnamedIndex++;
+                    ConstraintSet.set(present, parameter.Bit);
                 }
-                else if (!parameter.IsRequired) {
-                    if (parameter.DefaultValue != null) {
-                        value = getParameterValue(parameter.Type, name, parameter.DefaultValue);
-                    }
-                    else {
-                        value = getDefaultValue(parameter.Type);
-                    }
+                else if (parameter.IsRequired) {
+                    throw new CmdException(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, name, "Missing unnamed option");
                 }
                 else {
-                    throw new CmdException(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, name, "Missing unnamed option");
+                    specified = false;
                 }
             }
-            else if (options.containsKey(parameter.Name)) {
-                // Parameter specified using full name, good!
+            else if (ConstraintSet.isSet(present, parameter.Bit)) {
+                // Parameter specified using full or short name, good!
                 Option option = options.get(parameter.Name);
-                value = getParameterValue(parameter.Type, parameter.Name, option.Value);
+                if (option == null) {
+                    name = parameter.ShortName;
+                    option = options.get(parameter.ShortName);
+                }
+                text = option.Value;
+            }
+            else if (parameter.IsRequired) {
+                // Parameter not specified, but it's required!
+                throw new CmdException(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, parameter.Name, "Missing required parameter");
+            }
+            else {
+                specified = false;
+            }
+
+            if (specified && slots != null && Placeholder.equals(text)) {
+                // Value will be bound later
+                slots.add(createSlot(false, depth, i, parameter, name));
+                continue;
+            }
+
+            commandArgs[i] = this.getValue(parameter, name, text, specified, options);
+        }
+
+        if (unnamedIndex < unnamedOptions.size()) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_UNKNOWN_PARAMETER, unnamedOptions.get(unnamedIndex), "Unknown unnamed parameter");
+        }
+        if (command.Constraints != null) {
+            command.Constraints.check(present);
+        }
+
+        if (command.IsHelp) {
+            if (slots != null) {
+                for (int i = slots.size() - 1; i >= 0 && slots.get(i).Depth == depth; i--) {
+                    slots.remove(i);
+                }
+            }
+            Object[] helpArgs = new Object[command.Parameters.length];
+            String helpText = this.getHelpText();
+            for (int i = 0; i < helpArgs.length; i++) {
+                if (i != command.OutputIndex) {
+                    helpArgs[i] = helpText;
+                }
+            }
+            return new ParsedCommand(this, command.Name, this.getMethod(command), command.Timeout, command.Bulkhead, null, command.OutputIndex, helpArgs, new Field[0], new Object[0]);
+        }
+
+        Object[] globalValues = this.getGlobalValues(options, present, slots, depth);
+        awaitPrefetch(command, commandArgs);
+        return new ParsedCommand(this, command.Name, this.getMethod(command), command.Timeout, command.Bulkhead, this.getHolders(command), command.OutputIndex, commandArgs, this.getGlobalFields(), globalValues);
+    }
+
+    /**
+     * Parses the command line arguments of a command group. Options specified before the name of the group
+     * are global options of this parser, remaining arguments are parsed by the parser of the group.
+     * @param group Command group
+     * @param args Command line arguments following the name of the group
+     * @param options Map with global options specified before the name of the group
+     * @param present Mask of the specified global options
+     * @param slots List collecting the placeholders, null if placeholders are not allowed
+     * @param depth Depth of this parser
+     * @return Parsed command of the group
+     * @throws CmdException Thrown when the command line arguments are invalid
+     */
+    private ParsedCommand parseGroup(Group group, String[] args, Map<String, Option> options, long[] present, List<PreparedCommand.Slot> slots, int depth)
+            throws CmdException {
+        if (this._globalConstraints != null) {
+            this._globalConstraints.check(present);
+        }
+        Object[] globalValues = this.getGlobalValues(options, present, slots, depth);
+        ParsedCommand child = this.getGroupParser(group).parse(args, slots, depth + 1);
+        return new ParsedCommand(this, group.Name, this.getAccessor(group), child, this.getGlobalFields(), globalValues);
+    }
+
+    /**
+     * Returns the parser of the command group, the parser is created when the group is used for the first time.
+     * @param group Command group
+     * @return Parser of the command group
+     * @throws CmdException Thrown when the definition of command line is invalid
+     */
+    private CmdParser getGroupParser(Group group) throws CmdException {
+        CmdParser parser = group.Parser;
+        if (parser == null) {
+            synchronized (group) {
+                parser = group.Parser;
+                if (parser == null) {
+                    parser = new CmdParser(group.HandlerType, null);
+                    parser._allowAbbreviations = this._allowAbbreviations;
+                    group.Parser = parser;
+                }
+            }
+        }
+        return parser;
+    }
+
+    /**
+     * Resolves the name of a command or command group.
+     * @param arg Command line argument with the name
+     * @return Command or command group
+     * @throws CmdException Thrown when the name is unknown or it's an ambiguous abbreviation
+     */
+    private Object resolveCommand(String arg) throws CmdException {
+        String commandName = arg.toLowerCase();
+        RadixTree<Object> tree = this._commandTree;
+        if (tree == null) {
+            tree = new RadixTree<Object>();
+            for (Command command : this._commands) {
+                tree.put(command.Name, command);
+                tree.put(command.ShortName, command);
+            }
+            for (Group group : this._groupList) {
+                tree.put(group.Name, group);
+                tree.put(group.ShortName, group);
+            }
+            this._commandTree = tree;
+        }
+
+        Object target = this.resolveName(tree, arg, commandName);
+        if (target == null) {
+            // Unnamed parameters without a command are illegal
+            throw new CmdException(CmdExceptionCode.DISPATCH_UNKNOWN_COMMAND, arg, "Unknown command", this.suggestCommands(commandName));
+        }
+        return target;
+    }
+
+    /**
+     * Checks whether the options are defined for the command and indexes them by name. Repeated options
+     * are merged into one, abbreviated names (if allowed) are replaced by the full name of the parameter.
+     * The bits of the specified parameters are set in the mask of present options.
+     * @param optionList Options in the order they were specified
+     * @param command Command, null if only global options are allowed
+     * @param present Mask of present options
+     * @return Map of options indexed by name
+     * @throws CmdException Thrown when an option is unknown or it's an ambiguous abbreviation
+     */
+    private Map<String, Option> collectOptions(List<Option> optionList, Command command, long[] present) throws CmdException {
+        Map<String, Option> options = new HashMap<String, Option>();
+        if (optionList.isEmpty()) {
+            return options;
+        }
+
+        RadixTree<Parameter> tree = this.getOptionTree(command);
+        for (Option option : optionList) {
+            Parameter parameter = tree.get(option.Name);
+            if (parameter == null) {
+                parameter = this.resolveName(tree, option.Name, option.Name);
+                if (parameter == null) {
+                    throw new CmdException(CmdExceptionCode.DISPATCH_UNKNOWN_PARAMETER, option.Name, "Unknown option", this.suggestOptions(command, option.Name));
+                }
+                option.Name = parameter.Name;
+            }
+            ConstraintSet.set(present, parameter.Bit);
+
+            Option previous = options.put(option.Name, option);
+            if (previous != null) {
+                // Repeated option, the last value is used unless the parameter is a collection
+                option.Values = previous.Values;
+                if (option.Values == null) {
+                    option.Values = new ArrayList<String>();
+                    option.Values.add(previous.Value);
+                }
+                option.Values.add(option.Value);
+            }
+        }
+        return options;
+    }
+
+    /**
+     * Returns the index of the option names of the command (including the global options).
+     * @param command Command, null if only global options are allowed
+     * @return Index of the option names
+     */
+    private RadixTree<Parameter> getOptionTree(Command command) {
+        RadixTree<Parameter> tree = command != null ? command.OptionTree : this._globalOptionTree;
+        if (tree == null) {
+            tree = new RadixTree<Parameter>();
+            for (GlobalParameter globalParameter : this._globalParameters) {
+                tree.put(globalParameter.Parameter.Name, globalParameter.Parameter);
+                tree.put(globalParameter.Parameter.ShortName, globalParameter.Parameter);
+            }
+            if (command != null) {
+                for (Parameter parameter : command.Parameters) {
+                    if (!parameter.IsUnnamed) {
+                        tree.put(parameter.Name, parameter);
+                        tree.put(parameter.ShortName, parameter);
+                    }
+                }
+                command.OptionTree = tree;
+            }
+            else {
+                this._globalOptionTree = tree;
+            }
+        }
+        return tree;
+    }
+
+    /**
+     * Finds the target of the name, the name can be abbreviated to a unique prefix if abbreviations are allowed.
+     * @param tree Index of the names
+     * @param arg Command line argument with the name (to provide eventual error information)
+     * @param name Name in lower case
+     * @param <T> Type of the targets
+     * @return Target of the name, null if the name is unknown
+     * @throws CmdException Thrown when the name is an abbreviation of names with different targets
+     */
+    private <T> T resolveName(RadixTree<T> tree, String arg, String name) throws CmdException {
+        T target = tree.get(name);
+        if (target != null || !this._allowAbbreviations || name.length() == 0) {
+            return target;
+        }
+
+        target = tree.getUnique(name);
+        if (target == null) {
+            List<String> candidates = tree.getNames(name);
+            if (!candidates.isEmpty()) {
+                throw new CmdException(CmdExceptionCode.DISPATCH_AMBIGUOUS_ABBREVIATION, arg, "Ambiguous abbreviation", candidates);
+            }
+        }
+        return target;
+    }
+
+    /**
+     * Returns the options holders of the command, their constructors are looked up when used for the first time.
+     * @param command Command
+     * @return Options holders, null if the command has no options holders
+     * @throws CmdException Thrown when a constructor could not be found
+     */
+    private OptionsHolder[] getHolders(Command command) throws CmdException {
+        if (command.Holders == null) {
+            return null;
+        }
+
+        for (OptionsHolder holder : command.Holders) {
+            if (holder.Constructor == null) {
+                Class[] parameterTypes = new Class[holder.Count];
+                for (int i = 0; i < parameterTypes.length; i++) {
+                    parameterTypes[i] = getDeclaredType(command.Parameters[holder.First + i]);
+                }
+                try {
+                    holder.Constructor = holder.Type.getConstructor(parameterTypes);
+                } catch (Exception e) {
+                    throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, holder.Type.getSimpleName(), "Unable to find options holder constructor", e);
+                }
+            }
+        }
+        return command.Holders;
+    }
+
+    /**
+     * Returns the type of a parameter as declared in the code.
+     * @param parameter Parameter definition
+     * @return Declared type of the parameter
+     */
+    private static Class getDeclaredType(Parameter parameter) {
+        return parameter.IsLazy ? Lazy.class : parameter.Type;
+    }
+
+    /**
+     * Returns the fields of the global parameters (the fields are looked up when used for the first time).
+     * @return Array of fields
+     * @throws CmdException Thrown when a field could not be found
+     */
+    private Field[] getGlobalFields() throws CmdException {
+        Field[] globalFields = new Field[this._globalParameters.size()];
+        for (int i = 0; i < globalFields.length; i++) {
+            GlobalParameter globalParameter = this._globalParameters.get(i);
+            if (globalParameter.Field == null) {
+                try {
+                    globalParameter.Field = this._type.getField(globalParameter.FieldName);
+                } catch (Exception e) {
+                    throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, globalParameter.FieldName, "Unable to find global parameter field", e);
+                }
+            }
+            globalFields[i] = globalParameter.Field;
+        }
+        return globalFields;
+    }
+
+    /**
+     * Returns the method implementing the command (the method is looked up when used for the first time).
+     * @param command Command
+     * @return Method implementing the command
+     * @throws CmdException Thrown when the method could not be found
+     */
+    private Method getMethod(Command command) throws CmdException {
+        Method method = command.Method;
+        if (method == null) {
+            Class[] types = new Class[command.Parameters.length];
+            for (int i = 0; i < types.length; i++) {
+                types[i] = getDeclaredType(command.Parameters[i]);
+            }
+            Class[] parameterTypes = OptionsHolder.toParameterTypes(command.Holders, types);
+            try {
+                method = this._type.getDeclaredMethod(command.MethodName, parameterTypes);
+            } catch (Exception e) {
+                throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, command.Name, "Unable to find command method", e);
+            }
+            command.Method = method;
+        }
+        return method;
+    }
+
+    /**
+     * Returns the field or method providing the handler object of the command group
+     * (the member is looked up when used for the first time).
+     * @param group Command group
+     * @return Field or method
+     * @throws CmdException Thrown when the member could not be found
+     */
+    private AccessibleObject getAccessor(Group group) throws CmdException {
+        AccessibleObject accessor = group.Accessor;
+        if (accessor == null) {
+            try {
+                accessor = group.IsMethod ? this._type.getDeclaredMethod(group.MemberName) : this._type.getField(group.MemberName);
+            } catch (Exception e) {
+                throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, group.Name, "Unable to find command group member", e);
+            }
+            group.Accessor = accessor;
+        }
+        return accessor;
+    }
+
+    /**
+     * Loads the definition of command line from the cache file.
+     * @param file Cache file
+     * @return True if the definition was loaded, false if the file doesn't exist, is stale or corrupted
+     */
+    private boolean loadSchema(File file) {
+        if (!file.isFile()) {
+            return false;
+        }
+
+        DataInputStream input = null;
+        try {
+            input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if (SchemaCache.readHeader(input, this._type)) {
+                this.readSchema(input);
+                return true;
+            }
+        } catch (IOException e) {
+            // Corrupted cache file or changed classes, the definition is created again
+        } finally {
+            closeQuietly(input);
+        }
+
+        this.clearSchema();
+        return false;
+    }
+
+    /**
+     * Saves the definition of command line to the cache file. Errors are ignored, since the cache is optional.
+     * The definition is not cached when the bytes of the classes are not available.
+     * @param file Cache file
+     */
+    private void saveSchema(File file) {
+        Class[] dependencies = this.getSchemaDependencies();
+        byte[] hash = SchemaCache.computeHash(this._type, dependencies);
+        if (hash == null) {
+            return;
+        }
+
+        File tempFile = null;
+        DataOutputStream output = null;
+        try {
+            // Unique name, so processes sharing the cache file don't overwrite each other's file before the rename
+            tempFile = File.createTempFile("." + file.getName() + ".", ".tmp", file.getAbsoluteFile().getParentFile());
+            output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            SchemaCache.writeHeader(output, this._type, dependencies, hash);
+            this.writeSchema(output);
+            output.close();
+            output = null;
+            if (!tempFile.renameTo(file)) {
+                file.delete();
+                tempFile.renameTo(file);
+            }
+        } catch (IOException e) {
+            // Definition cannot be cached, it will be created from annotations next time
+        } finally {
+            closeQuietly(output);
+            if (tempFile != null) {
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the classes other than the class defining the command line whose annotations are part of the definition
+     * (types of the options holders and of the command group handlers).
+     * @return Array of distinct classes
+     */
+    private Class[] getSchemaDependencies() {
+        Set<Class> dependencies = new LinkedHashSet<Class>();
+        for (Command command : this._commands) {
+            if (command.Holders != null) {
+                for (OptionsHolder holder : command.Holders) {
+                    dependencies.add(holder.Type);
+                }
+            }
+        }
+        for (Group group : this._groupList) {
+            dependencies.add(group.HandlerType);
+        }
+        dependencies.remove(this._type);
+        return dependencies.toArray(new Class[dependencies.size()]);
+    }
+
+    /**
+     * Closes the stream and ignores errors.
+     * @param stream Stream to close, may be null
+     */
+    private static void closeQuietly(Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            } catch (IOException e) {
+                // Ignored
+            }
+        }
+    }
+
+    /**
+     * Writes the definition of command line to the stream.
+     * @param output Output stream
+     * @throws IOException Thrown when writing failed or the definition cannot be cached
+     */
+    private void writeSchema(DataOutputStream output) throws IOException {
+        output.writeInt(this._commands.size());
+        for (Command command : this._commands) {
+            SchemaCache.writeString(output, command.Name);
+            SchemaCache.writeString(output, command.ShortName);
+            SchemaCache.writeString(output, command.Description);
+            SchemaCache.writeString(output, command.MethodName);
+            output.writeBoolean(command.IsHelp);
+            output.writeBoolean(command == this._defaultCommand);
+            output.writeLong(command.Timeout);
+            output.writeInt(command.MaxConcurrency);
+            output.writeInt(command.Parameters.length);
+            for (Parameter parameter : command.Parameters) {
+                writeParameter(output, parameter);
+            }
+            output.writeInt(command.Holders != null ? command.Holders.length : 0);
+            if (command.Holders != null) {
+                for (OptionsHolder holder : command.Holders) {
+                    output.writeInt(holder.Index);
+                    output.writeInt(holder.First);
+                    output.writeInt(holder.Count);
+                    SchemaCache.writeClass(output, holder.Type);
+                }
+            }
+        }
+
+        output.writeInt(this._globalParameters.size());
+        for (GlobalParameter globalParameter : this._globalParameters) {
+            SchemaCache.writeString(output, globalParameter.FieldName);
+            writeParameter(output, globalParameter.Parameter);
+        }
+
+        output.writeInt(this._groupList.size());
+        for (Group group : this._groupList) {
+            SchemaCache.writeString(output, group.Name);
+            SchemaCache.writeString(output, group.ShortName);
+            SchemaCache.writeString(output, group.Description);
+            SchemaCache.writeString(output, group.MemberName);
+            output.writeBoolean(group.IsMethod);
+            SchemaCache.writeClass(output, group.HandlerType);
+        }
+    }
+
+    /**
+     * Reads the definition of command line from the stream.
+     * @param input Input stream
+     * @throws IOException Thrown when reading failed or the classes could not be loaded
+     */
+    private void readSchema(DataInputStream input) throws IOException {
+        ClassLoader classLoader = this._type.getClassLoader();
+        int commandCount = input.readInt();
+        for (int i = 0; i < commandCount; i++) {
+            Command command = new Command();
+            command.Name = intern(SchemaCache.readString(input));
+            command.ShortName = intern(SchemaCache.readString(input));
+            command.Description = intern(SchemaCache.readString(input));
+            command.MethodName = intern(SchemaCache.readString(input));
+            command.IsHelp = input.readBoolean();
+            boolean isDefault = input.readBoolean();
+            command.Timeout = input.readLong();
+            command.MaxConcurrency = input.readInt();
+            if (command.MaxConcurrency > 0) {
+                command.Bulkhead = new Semaphore(command.MaxConcurrency);
+            }
+            int paramCount = input.readInt();
+            command.Parameters = new Parameter[paramCount];
+            for (int j = 0; j < paramCount; j++) {
+                command.Parameters[j] = this.readParameter(input, classLoader);
+            }
+            int holderCount = input.readInt();
+            if (holderCount > 0) {
+                command.Holders = new OptionsHolder[holderCount];
+                for (int j = 0; j < holderCount; j++) {
+                    OptionsHolder holder = new OptionsHolder();
+                    holder.Index = input.readInt();
+                    holder.First = input.readInt();
+                    holder.Count = input.readInt();
+                    holder.Type = SchemaCache.readClass(input, classLoader);
+                    command.Holders[j] = holder;
+                }
+            }
+            command.OutputIndex = findOutputIndex(command.Parameters);
+            this._commands.add(command);
+            if (isDefault) {
+                this._defaultCommand = command;
+            }
+        }
+
+        int globalCount = input.readInt();
+        for (int i = 0; i < globalCount; i++) {
+            GlobalParameter globalParameter = new GlobalParameter();
+            globalParameter.FieldName = SchemaCache.readString(input);
+            globalParameter.Parameter = this.readParameter(input, classLoader);
+            this._globalParameters.add(globalParameter);
+        }
+
+        int groupCount = input.readInt();
+        for (int i = 0; i < groupCount; i++) {
+            Group group = new Group();
+            group.Name = SchemaCache.readString(input);
+            group.ShortName = SchemaCache.readString(input);
+            group.Description = SchemaCache.readString(input);
+            group.MemberName = SchemaCache.readString(input);
+            group.IsMethod = input.readBoolean();
+            group.HandlerType = SchemaCache.readClass(input, classLoader);
+            this._groups.put(group.Name, group);
+            if (group.ShortName.length() > 0) {
+                this._groups.put(group.ShortName, group);
+            }
+            this._groupList.add(group);
+        }
+
+        try {
+            this.compileConstraints();
+        } catch (CmdException e) {
+            throw new IOException("Invalid constraints: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the definition of a parameter to the stream.
+     * @param output Output stream
+     * @param parameter Parameter definition
+     * @throws IOException Thrown when writing failed or the validator cannot be cached
+     */
+    private static void writeParameter(DataOutputStream output, Parameter parameter) throws IOException {
+        SchemaCache.writeString(output, parameter.Name);
+        SchemaCache.writeString(output, parameter.ShortName);
+        SchemaCache.writeString(output, parameter.Description);
+        SchemaCache.writeString(output, parameter.DefaultValue);
+        output.writeBoolean(parameter.IsUnnamed);
+        output.writeBoolean(parameter.IsRequired);
+        output.writeBoolean(parameter.IsLazy);
+        output.writeBoolean(parameter.IsPrefetch);
+        SchemaCache.writeClass(output, parameter.Type);
+        SchemaCache.writeClass(output, parameter.ElementType);
+        SchemaCache.writeClass(output, parameter.KeyType);
+        output.writeInt(parameter.Constraints != null ? parameter.Constraints.length : 0);
+        if (parameter.Constraints != null) {
+            for (Constraint constraint : parameter.Constraints) {
+                output.writeByte(constraint.Kind);
+                SchemaCache.writeString(output, constraint.Name);
+            }
+        }
+
+        IValidator validator = parameter.Validator;
+        if (validator == null) {
+            output.writeByte(0);
+        } else if (validator.getClass() == NonEmptyValidator.class) {
+            output.writeByte(1);
+        } else if (validator.getClass() == RegexValidator.class) {
+            output.writeByte(2);
+            output.writeUTF(((RegexValidator)validator).getRegex());
+        } else if (validator.getClass() == LongValidator.class) {
+            output.writeByte(3);
+            output.writeLong(((LongValidator)validator).getMin());
+            output.writeLong(((LongValidator)validator).getMax());
+        } else if (validator.getClass() == DoubleValidator.class) {
+            output.writeByte(4);
+            output.writeDouble(((DoubleValidator)validator).getMin());
+            output.writeDouble(((DoubleValidator)validator).getMax());
+        } else if (validator.getClass() == OneOfValidator.class) {
+            // Values of a resource are loaded again, so the cache doesn't duplicate large resources
+            OneOfValidator oneOf = (OneOfValidator)validator;
+            output.writeByte(5);
+            output.writeBoolean(oneOf.isIgnoreCase());
+            SchemaCache.writeString(output, oneOf.getResource());
+            if (oneOf.getResource() != null) {
+                SchemaCache.writeClass(output, oneOf.getOwner());
+            }
+            else {
+                output.writeInt(oneOf.getValues().size());
+                for (String value : oneOf.getValues()) {
+                    SchemaCache.writeString(output, value);
+                }
             }
-            else if (options.containsKey(parameter.ShortName)) {
-                // Parameter specified using short name, good!
-                Option option = options.get(parameter.ShortName);
-                value = getParameterValue(parameter.Type, parameter.ShortName, option.Value);
+        } else {
+            throw new IOException("Unsupported validator " + validator.getClass().getName());
+        }
+    }
+
+    /**
+     * Reads the definition of a parameter from the stream.
+     * @param input Input stream
+     * @param classLoader Class loader used to load the parameter types
+     * @return Parameter definition
+     * @throws IOException Thrown when reading failed or the classes could not be loaded
+     */
+    private Parameter readParameter(DataInputStream input, ClassLoader classLoader) throws IOException {
+        Parameter parameter = new Parameter();
+        parameter.Name = intern(SchemaCache.readString(input));
+        parameter.ShortName = intern(SchemaCache.readString(input));
+        parameter.Description = intern(SchemaCache.readString(input));
+        parameter.DefaultValue = intern(SchemaCache.readString(input));
+        parameter.IsUnnamed = input.readBoolean();
+        parameter.IsRequired = input.readBoolean();
+        parameter.IsLazy = input.readBoolean();
+        parameter.IsPrefetch = input.readBoolean();
+        parameter.Type = SchemaCache.readClass(input, classLoader);
+        parameter.ElementType = SchemaCache.readClass(input, classLoader);
+        parameter.KeyType = SchemaCache.readClass(input, classLoader);
+        int constraintCount = input.readInt();
+        if (constraintCount > 0) {
+            parameter.Constraints = new Constraint[constraintCount];
+            for (int i = 0; i < constraintCount; i++) {
+                parameter.Constraints[i] = new Constraint();
+                parameter.Constraints[i].Kind = input.readByte();
+                parameter.Constraints[i].Name = intern(SchemaCache.readString(input));
             }
-            else if (parameter.IsRequired) {
-                // Parameter not specified, but it's required!
-                throw new CmdException(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, parameter.Name, "Missing required parameter");
+        }
+
+        byte validatorKind = input.readByte();
+        if (validatorKind == 1) {
+            parameter.Validator = this.shareValidator(new NonEmptyValidator());
+        } else if (validatorKind == 2) {
+            parameter.Validator = this.shareValidator(new RegexValidator(input.readUTF()));
+        } else if (validatorKind == 3) {
+            parameter.Validator = this.shareValidator(new LongValidator(input.readLong(), input.readLong()));
+        } else if (validatorKind == 4) {
+            parameter.Validator = this.shareValidator(new DoubleValidator(input.readDouble(), input.readDouble()));
+        } else if (validatorKind == 5) {
+            boolean ignoreCase = input.readBoolean();
+            String resource = SchemaCache.readString(input);
+            if (resource != null) {
+                Class owner = SchemaCache.readClass(input, classLoader);
+                parameter.Validator = this.shareValidator(OneOfValidator.load(owner, resource, ignoreCase));
             }
             else {
-                // Parameter not specified, but it was not required. Using default value defined for parameter or for a type
-                if (parameter.DefaultValue != null) {
-                    value = getParameterValue(parameter.Type, parameter.Name, parameter.DefaultValue);
-                }
-                else {
-                    value = getDefaultValue(parameter.Type);
+                String[] values = new String[input.readInt()];
+                for (int i = 0; i < values.length; i++) {
+                    values[i] = SchemaCache.readString(input);
                 }
+                parameter.Validator = this.shareValidator(new OneOfValidator(values, ignoreCase));
             }
-            this.validate(value, parameter);
-            commandArgs.add(value);
+        } else if (validatorKind != 0) {
+            throw new IOException("Unknown validator " + validatorKind);
         }
+        return parameter;
+    }
 
-        if (unnamedIndex < unnamedOptions.size()) {
-            throw new CmdException(CmdExceptionCode.DISPATCH_UNKNOWN_PARAMETER, unnamedOptions.get(unnamedIndex), "Unknown unnamed parameter");
+    /**
+     * Converts and validates the values of all global parameters.
+     * @param options Map with options specified on the command line
+     * @param present Mask of the specified options
+     * @param slots List collecting the placeholders, null if placeholders are not allowed
+     * @param depth Depth of this parser
+     * @return Array of values (in the same order as global parameters)
+     * @throws CmdException Thrown when a value is missing or not correct
+     */
+    private Object[] getGlobalValues(Map<String, Option> options, long[] present, List<PreparedCommand.Slot> slots, int depth) throws CmdException {
+        Object[] globalValues = new Object[this._globalParameters.size()];
+        for (int i = 0; i < globalValues.length; i++) {
+            globalValues[i] = this.getGlobalParameterValue(this._globalParameters.get(i).Parameter, options, present, slots, depth, i);
         }
-
-        this.runCommand(command, commandArgs.toArray(), options);
+        return globalValues;
     }
 
     /**
@@ -317,51 +2041,95 @@ public class CmdParser {
      * @param option A command line option
      * @return An Option object
      */
-    private Option parseOption(String option) {
+    static Option parseOption(String option) {
+        int nameIndex = 0;
         if (option.startsWith("--")) {
-            option = option.substring(2);
+            nameIndex = 2;
         }
         else if (option.startsWith("-")) {
-            option = option.substring(1);
+            nameIndex = 1;
         }
 
-        int separatorIndex = option.indexOf('=');
-        if (separatorIndex <= 0) {
-            separatorIndex = option.indexOf(':');
+        int separatorIndex = option.indexOf('=', nameIndex);
+        if (separatorIndex <= nameIndex) {
+            separatorIndex = option.indexOf(':', nameIndex);
         }
         Option result = new Option();
-        if (separatorIndex > 0) {
-            result.Name = option.substring(0, separatorIndex).toLowerCase();
-            if (option.length() > separatorIndex + 1) {
-                result.Value = option.substring(separatorIndex + 1);
-            }
-            else {
-                result.Value = "";
-            }
+        if (separatorIndex > nameIndex) {
+            result.Name = option.substring(nameIndex, separatorIndex).toLowerCase();
+            result.Value = option.substring(separatorIndex + 1);
         }
         else {
-            result.Name = option.toLowerCase();
+            result.Name = option.substring(nameIndex).toLowerCase();
         }
 
         return result;
     }
 
     /**
-     * Finds a command on a command list based on the full or short name.
-     * @param commandName Full or short name of the command
-     * @return An object of the matching command, null if not found
+     * Returns names of commands and command groups similar to the specified name.
+     * @param commandName Unknown name of a command
+     * @return List of similar names
      */
-    private Command findCommand(String commandName) {
-        if (commandName != null && commandName.trim().length() > 0) {
-            for (Command command : this._commands) {
-                if ((command.Name != null && command.Name.equals(commandName))
-                        || (command.ShortName != null && command.ShortName.equals(commandName))) {
-                    return command;
+    private List<String> suggestCommands(String commandName) {
+        BkTree tree;
+        synchronized (this) {
+            if (this._commandNameTree == null) {
+                tree = new BkTree();
+                for (Command command : this._commands) {
+                    tree.add(command.Name);
+                    tree.add(command.ShortName);
+                }
+                for (String groupName : this._groups.keySet()) {
+                    tree.add(groupName);
+                }
+                this._commandNameTree = tree;
+            }
+            tree = this._commandNameTree;
+        }
+        return tree.search(commandName, getMaxDistance(commandName));
+    }
+
+    /**
+     * Returns names of options of the command (including the global options) similar to the specified name.
+     * @param command Command, null if only global options are allowed
+     * @param optionName Unknown name of an option
+     * @return List of similar names
+     */
+    private List<String> suggestOptions(Command command, String optionName) {
+        BkTree tree;
+        synchronized (this) {
+            tree = command != null ? command.OptionNameTree : this._globalNameTree;
+            if (tree == null) {
+                tree = new BkTree();
+                for (GlobalParameter globalParameter : this._globalParameters) {
+                    tree.add(globalParameter.Parameter.Name);
+                    tree.add(globalParameter.Parameter.ShortName);
+                }
+                if (command != null) {
+                    for (Parameter parameter : command.Parameters) {
+                        if (!parameter.IsUnnamed) {
+                            tree.add(parameter.Name);
+                            tree.add(parameter.ShortName);
+                        }
+                    }
+                    command.OptionNameTree = tree;
+                }
+                else {
+                    this._globalNameTree = tree;
                 }
             }
         }
+        return tree.search(optionName, getMaxDistance(optionName));
+    }
 
-        return null;
+    /**
+     * Returns the maximal edit distance of suggested names, so short names don't match everything.
+     * @param name Unknown name
+     * @return Maximal Levenshtein distance
+     */
+    private static int getMaxDistance(String name) {
+        return name.length() <= 4 ? 1 : name.length() <= 8 ? 2 : 3;
     }
 
     /**
@@ -371,73 +2139,297 @@ public class CmdParser {
      * @throws CmdException Thrown when the value is not correct
      */
     private void validate(Object value, Parameter parameter) throws CmdException {
-        if (parameter.Validator != null) {
-            if (parameter.Type.isArray()) {
+        validateValue(value, parameter.Type, parameter.Name, parameter.Validator);
+    }
+
+    /**
+     * Validates whether the specified value is correct for specified type (if validator is present).
+     * @param value Value to check
+     * @param type Type of the parameter
+     * @param name Name of the parameter (to provide eventual error information)
+     * @param validator Validator of the parameter, may be null
+     * @throws CmdException Thrown when the value is not correct
+     */
+    static void validateValue(Object value, Class type, String name, IValidator validator) throws CmdException {
+        if (validator != null) {
+            if (value instanceof Collection || value instanceof Map) {
+                Collection<?> values = value instanceof Map ? ((Map<?, ?>)value).values() : (Collection<?>)value;
+                for (Object element : values) {
+                    String errorMessage = validator.validateValue(element);
+                    if (errorMessage != null) {
+                        throw new CmdException(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, name, errorMessage);
+                    }
+                }
+            }
+            else if (type.isArray()) {
                 for (int i = 0; i < Array.getLength(value); i++) {
-                    String errorMessage = parameter.Validator.validateValue(Array.get(value, i));
+                    String errorMessage = validator.validateValue(Array.get(value, i));
                     if (errorMessage != null) {
-                        throw new CmdException(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, parameter.Name, errorMessage);
+                        throw new CmdException(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, name, errorMessage);
                     }
                 }
             }
             else {
-                String errorMessage = parameter.Validator.validateValue(value);
+                String errorMessage = validator.validateValue(value);
                 if (errorMessage != null) {
-                    throw new CmdException(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, parameter.Name, errorMessage);
+                    throw new CmdException(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, name, errorMessage);
                 }
             }
         }
     }
 
     /**
-     * Runs a specified command by invoking a corresponding method.
-     * @param command Command to run
-     * @param arguments Command's arguments
-     * @param options Map with options (needed to set global parameters)
-     * @throws CmdException Thrown when the method could not be invoked for some reason
+     * Converts and validates the value of a global parameter.
+     * @param parameter Global parameter definition
+     * @param options Map with options specified on the command line
+     * @param present Mask of the specified options
+     * @param slots List collecting the placeholders, null if placeholders are not allowed
+     * @param depth Depth of this parser
+     * @param index Index of the global parameter
+     * @return Value to be set on the global parameter field
+     * @throws CmdException Thrown when the value is missing or not correct
      */
-    private void runCommand(Command command, Object[] arguments, Map<String, Option> options) throws CmdException {
-        try {
-            if (command.IsHelp) {
-                command.Method.invoke(this._impl, this.getHelpText());
-                return;
+    private Object getGlobalParameterValue(Parameter parameter, Map<String, Option> options, long[] present, List<PreparedCommand.Slot> slots, int depth, int index) throws CmdException {
+        String name = parameter.Name;
+        String text;
+        if (ConstraintSet.isSet(present, parameter.Bit)) {
+            // Parameter specified using full or short name, good!
+            Option option = options.get(parameter.Name);
+            if (option == null) {
+                name = parameter.ShortName;
+                option = options.get(parameter.ShortName);
             }
+            text = option.Value;
+        }
+        else if (parameter.IsRequired) {
+            // Parameter not specified, but it's required!
+            throw new CmdException(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, parameter.Name, "Missing required parameter");
+        }
+        else {
+            // Parameter not specified, but it was not required
+            return this.getValue(parameter, name, null, false, options);
+        }
 
-            for (GlobalParameter globalParameter : this._globalParameters) {
-                Object value;
-                if (options.containsKey(globalParameter.Parameter.Name)) {
-                    // Parameter specified using full name, good!
-                    Option option = options.get(globalParameter.Parameter.Name);
-                    value = getParameterValue(globalParameter.Parameter.Type, globalParameter.Parameter.Name, option.Value);
-                }
-                else if (options.containsKey(globalParameter.Parameter.ShortName)) {
-                    // Parameter specified using short name, good!
-                    Option option = options.get(globalParameter.Parameter.ShortName);
-                    value = getParameterValue(globalParameter.Parameter.Type, globalParameter.Parameter.ShortName, option.Value);
-                }
-                else if (globalParameter.Parameter.IsRequired) {
-                    // Parameter not specified, but it's required!
-                    throw new CmdException(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, globalParameter.Parameter.Name, "Missing required parameter");
-                }
-                else {
-                    // Parameter not specified, but it was not required. Using default value defined for parameter or for a type
-                    if (globalParameter.Parameter.DefaultValue != null) {
-                        value = getParameterValue(globalParameter.Parameter.Type, globalParameter.Parameter.Name, globalParameter.Parameter.DefaultValue);
-                    }
-                    else {
-                        value = getDefaultValue(globalParameter.Parameter.Type);
-                    }
+        if (slots != null && Placeholder.equals(text)) {
+            // Value will be bound later
+            slots.add(createSlot(true, depth, index, parameter, name));
+            return null;
+        }
+
+        return this.getValue(parameter, name, text, true, options);
+    }
+
+    /**
+     * Starts loading of the files of prefetched parameters specified as options, so the I/O overlaps
+     * with the conversion of the remaining parameters.
+     * @param command Command
+     * @param options Map with options
+     * @param slots List collecting the placeholders, null if placeholders are not allowed
+     * @param commandArgs Arguments of the command, receiving the pending results
+     * @throws CmdException Thrown when the file name is not correct
+     */
+    private void startPrefetch(Command command, Map<String, Option> options, List<PreparedCommand.Slot> slots, Object[] commandArgs) throws CmdException {
+        for (int i = 0; i < commandArgs.length; i++) {
+            Parameter parameter = command.Parameters[i];
+            if (!parameter.IsPrefetch || parameter.IsUnnamed) {
+                continue;
+            }
+            String name = options.containsKey(parameter.Name) ? parameter.Name : parameter.ShortName;
+            Option option = options.get(name);
+            if (option != null && !(slots != null && Placeholder.equals(option.Value))) {
+                commandArgs[i] = this.convertValue(parameter, name, null, true, options);
+            }
+        }
+    }
+
+    /**
+     * Starts loading of the file on the executor of the parser.
+     * @param name Name of the parameter (to provide eventual error information)
+     * @param path Path of the file
+     * @return Pending result of the loading
+     */
+    private Future<MappedByteBuffer> startPrefetch(final String name, final String path) {
+        return this.getExecutor().submit(new Callable<MappedByteBuffer>() {
+            @Override
+            public MappedByteBuffer call() throws CmdException {
+                return mapFile(name, path);
+            }
+        });
+    }
+
+    /**
+     * Waits for the files of prefetched parameters of type MappedByteBuffer, so the command gets the loaded buffers.
+     * @param command Command
+     * @param commandArgs Arguments of the command, the pending results are replaced by the buffers
+     * @throws CmdException Thrown when a file could not be loaded
+     */
+    private static void awaitPrefetch(Command command, Object[] commandArgs) throws CmdException {
+        for (int i = 0; i < commandArgs.length; i++) {
+            Parameter parameter = command.Parameters[i];
+            if (!parameter.IsPrefetch || !parameter.Type.equals(MappedByteBuffer.class) || !(commandArgs[i] instanceof Future)) {
+                continue;
+            }
+            try {
+                commandArgs[i] = ((Future)commandArgs[i]).get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof CmdException) {
+                    throw (CmdException)e.getCause();
                 }
-                this.validate(value, globalParameter.Parameter);
-                globalParameter.Field.set(this._impl, value);
+                throw new CmdException(CmdExceptionCode.DISPATCH_IO_ERROR, parameter.Name, "Unable to read file", e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new CmdException(CmdExceptionCode.DISPATCH_CANCELLED, parameter.Name, "Interrupted while reading file", e);
             }
+        }
+    }
 
-            command.Method.invoke(this._impl, arguments);
-        } catch (CmdException e) {
-            throw e;
+    /**
+     * Memory-maps the file and loads its content to physical memory.
+     * @param name Name of the parameter (to provide eventual error information)
+     * @param path Path of the file
+     * @return Loaded buffer with the content of the file
+     * @throws CmdException Thrown when the file could not be read
+     */
+    static MappedByteBuffer mapFile(String name, String path) throws CmdException {
+        try {
+            RandomAccessFile file = new RandomAccessFile(path, "r");
+            try {
+                MappedByteBuffer buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, file.length());
+                buffer.load();
+                return buffer;
+            } finally {
+                file.close();
+            }
         } catch (Exception e) {
-            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, "Unable to invoke command", e);
+            throw new CmdException(CmdExceptionCode.DISPATCH_IO_ERROR, name, "Unable to read file " + path, e);
+        }
+    }
+
+    /**
+     * Returns the value of the parameter, for lazy parameters the value is converted when it's used.
+     * @param parameter Parameter definition
+     * @param name Name used for the parameter on the command line
+     * @param text Text of the unnamed parameter
+     * @param specified Flag whether the parameter is specified on the command line
+     * @param options Map with options
+     * @return Converted and validated value or a lazy value
+     * @throws CmdException Thrown when the value could not be converted or is not correct
+     */
+    private Object getValue(final Parameter parameter, final String name, final String text, final boolean specified, final Map<String, Option> options) throws CmdException {
+        if (!parameter.IsLazy) {
+            return this.convertValue(parameter, name, text, specified, options);
+        }
+
+        return new Lazy<Object>(new Callable<Object>() {
+            @Override
+            public Object call() throws CmdException {
+                return convertValue(parameter, name, text, specified, options);
+            }
+        });
+    }
+
+    /**
+     * Converts and validates the value of the parameter.
+     * @param parameter Parameter definition
+     * @param name Name used for the parameter on the command line
+     * @param text Text of the unnamed parameter
+     * @param specified Flag whether the parameter is specified on the command line
+     * @param options Map with options
+     * @return Converted and validated value
+     * @throws CmdException Thrown when the value could not be converted or is not correct
+     */
+    private Object convertValue(Parameter parameter, String name, String text, boolean specified, Map<String, Option> options) throws CmdException {
+        if (parameter.IsPrefetch) {
+            String path = specified ? (parameter.IsUnnamed ? text : options.get(name).Value) : parameter.DefaultValue;
+            if (path == null) {
+                return null;
+            }
+            validateValue(path, String.class, name, parameter.Validator);
+            return this.startPrefetch(name, path);
+        }
+
+        Object value;
+        if (specified && !parameter.IsUnnamed) {
+            value = getOptionValue(parameter, name, options);
+        }
+        else if (specified) {
+            value = getParameterValue(parameter.Type, parameter.ElementType, parameter.KeyType, name, text);
+        }
+        else if (parameter.DefaultValue != null) {
+            // Parameter not specified, but it was not required. Using default value defined for parameter or for a type
+            value = getParameterValue(parameter.Type, parameter.ElementType, parameter.KeyType, name, parameter.DefaultValue);
+        }
+        else {
+            value = getDefaultValue(parameter);
+        }
+        this.validate(value, parameter);
+        return value;
+    }
+
+    /**
+     * Converts the value of an option specified on the command line. Values of collection parameters
+     * are accumulated from all occurrences of the option (using both full and short name).
+     * @param parameter Parameter definition
+     * @param name Name under which the parameter was specified
+     * @param options Map with options specified on the command line
+     * @return Converted value
+     * @throws CmdException Thrown when the value could not be converted
+     */
+    private static Object getOptionValue(Parameter parameter, String name, Map<String, Option> options) throws CmdException {
+        try {
+            if (parameter.ElementType == null) {
+                return getParameterValue(parameter.Type, name, options.get(name).Value);
+            }
+
+            List<String> values = new ArrayList<String>();
+            addOptionValues(values, options.get(parameter.Name));
+            if (parameter.ShortName != null && parameter.ShortName.length() > 0 && !parameter.ShortName.equals(parameter.Name)) {
+                addOptionValues(values, options.get(parameter.ShortName));
+            }
+            return getCollectionValue(parameter.Type, parameter.ElementType, parameter.KeyType, name, values);
+        } catch (NumberFormatException e) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, name, "The value must be a number");
+        }
+    }
+
+    /**
+     * Adds all values of the option to the list.
+     * @param values List of values
+     * @param option Option, may be null
+     */
+    private static void addOptionValues(List<String> values, Option option) {
+        if (option == null) {
+            return;
         }
+        if (option.Values != null) {
+            values.addAll(option.Values);
+        }
+        else {
+            values.add(option.Value);
+        }
+    }
+
+    /**
+     * Creates a slot of a prepared command for a parameter specified with a placeholder.
+     * @param isGlobal True if the slot refers to a global parameter
+     * @param depth Depth of the parser (command group) owning the parameter
+     * @param index Index of the command argument or global parameter
+     * @param parameter Parameter definition
+     * @param name Name under which the parameter was specified
+     * @return Slot object
+     */
+    private static PreparedCommand.Slot createSlot(boolean isGlobal, int depth, int index, Parameter parameter, String name) {
+        PreparedCommand.Slot slot = new PreparedCommand.Slot();
+        slot.IsGlobal = isGlobal;
+        slot.Depth = depth;
+        slot.Index = index;
+        slot.Type = parameter.Type;
+        slot.ElementType = parameter.ElementType;
+        slot.KeyType = parameter.KeyType;
+        slot.Name = name;
+        slot.Validator = parameter.Validator;
+        slot.IsLazy = parameter.IsLazy;
+        return slot;
     }
 
     /**
@@ -457,6 +2449,14 @@ public class CmdParser {
         }
         builder.append(LineSeparator);
 
+        if (!this._groupList.isEmpty()) {
+            builder.append("Command groups:"); builder.append(LineSeparator);
+            for (Group group : this._groupList) {
+                builder.append(this.formatGroup(group));
+            }
+            builder.append(LineSeparator);
+        }
+
         builder.append("Commands:"); builder.append(LineSeparator);
         for (Command command : this._commands) {
             builder.append(this.formatCommand(command));
@@ -464,6 +2464,28 @@ public class CmdParser {
         return builder.toString();
     }
 
+    /**
+     * Generates a help message for a command group.
+     * @param group Command group to generate help for
+     * @return Help text about command group
+     */
+    private String formatGroup(Group group) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("  ");
+        builder.append(group.Name);
+        if (group.ShortName.length() > 0) {
+            builder.append(" (");
+            builder.append(group.ShortName);
+            builder.append(")");
+        }
+        while (builder.length() < 20) {
+            builder.append(' ');
+        }
+        builder.append(group.Description);
+        builder.append(LineSeparator);
+        return builder.toString();
+    }
+
     /**
      * Generates a help message for a command.
      * @param command Command to generate help for
@@ -485,6 +2507,9 @@ public class CmdParser {
         builder.append(LineSeparator);
         int unnamedIndex = 0;
         for (Parameter parameter : command.Parameters) {
+            if (parameter.Type.equals(CommandOutput.class)) {
+                continue;
+            }
             builder.append("    ");
             builder.append(this.formatParameter(parameter, unnamedIndex, 20));
             builder.append(LineSeparator);
@@ -536,34 +2561,222 @@ public class CmdParser {
             builder.append(", Default=");
             builder.append(parameter.DefaultValue);
         }
+        if (parameter.Validator instanceof OneOfValidator) {
+            builder.append(", Values=");
+            builder.append(((OneOfValidator)parameter.Validator).formatValues(OneOfValidator.MaxListedValues));
+        }
         builder.append("]");
         return builder.toString();
     }
 
     /**
-     * Sets the value of the specified element in an array.
-     * @param array Array object
-     * @param index Index of the array element to set
-     * @param valueClass Type of the value to set
-     * @param value Value to set
-     */
-    private static void setArrayValue(Object array, int index, Class valueClass, Object value) {
-        if (valueClass.equals(boolean.class)) {
-            Array.setBoolean(array, index, (Boolean)value);
-        } else if (valueClass.equals(byte.class)) {
-            Array.setByte(array, index, (Byte)value);
-        } else if (valueClass.equals(short.class)) {
-            Array.setShort(array, index, (Short)value);
-        } else if (valueClass.equals(char.class)) {
-            Array.setChar(array, index, (Character)value);
-        } else if (valueClass.equals(int.class)) {
-            Array.setInt(array, index, (Integer)value);
-        } else if (valueClass.equals(float.class)) {
-            Array.setFloat(array, index, (Float)value);
-        } else if (valueClass.equals(double.class)) {
-            Array.setDouble(array, index, (Double)value);
+     * Splits a comma separated value into elements (trailing empty elements are removed, as in String.split).
+     * @param value Comma separated value
+     * @return Array of elements
+     */
+    static String[] splitValues(String value) {
+        if (value.length() == 0) {
+            return new String[] { value };
+        }
+
+        int end = value.length();
+        while (end > 0 && value.charAt(end - 1) == ',') {
+            end--;
+        }
+        if (end == 0) {
+            return new String[0];
+        }
+
+        int count = 1;
+        for (int i = 0; i < end; i++) {
+            if (value.charAt(i) == ',') {
+                count++;
+            }
+        }
+
+        String[] result = new String[count];
+        int start = 0;
+        for (int i = 0; i < count; i++) {
+            int separatorIndex = value.indexOf(',', start);
+            if (separatorIndex < 0 || separatorIndex > end) {
+                separatorIndex = end;
+            }
+            result[i] = value.substring(start, separatorIndex);
+            start = separatorIndex + 1;
+        }
+        return result;
+    }
+
+    /**
+     * Parses the comma separated value to an array. Arrays of primitive types are filled directly,
+     * without boxing the elements.
+     * @param componentType Type of the array elements
+     * @param name Name of the parameter (to provide eventual error information)
+     * @param value Comma separated value to parse
+     * @return Array of the proper type with parsed values
+     * @throws CmdException Thrown when parsing the value to a specified type failed
+     */
+    private static Object getArrayValue(Class componentType, String name, String value) throws CmdException {
+        String[] splitValues = splitValues(value);
+        if (componentType.equals(int.class)) {
+            int[] array = new int[splitValues.length];
+            for (int i = 0; i < splitValues.length; i++) {
+                array[i] = Integer.parseInt(splitValues[i]);
+            }
+            return array;
+        } else if (componentType.equals(long.class)) {
+            long[] array = new long[splitValues.length];
+            for (int i = 0; i < splitValues.length; i++) {
+                array[i] = Long.parseLong(splitValues[i]);
+            }
+            return array;
+        } else if (componentType.equals(double.class)) {
+            double[] array = new double[splitValues.length];
+            for (int i = 0; i < splitValues.length; i++) {
+                array[i] = Double.parseDouble(splitValues[i]);
+            }
+            return array;
+        } else if (componentType.equals(float.class)) {
+            float[] array = new float[splitValues.length];
+            for (int i = 0; i < splitValues.length; i++) {
+                array[i] = Float.parseFloat(splitValues[i]);
+            }
+            return array;
+        } else if (componentType.equals(short.class)) {
+            short[] array = new short[splitValues.length];
+            for (int i = 0; i < splitValues.length; i++) {
+                array[i] = Short.parseShort(splitValues[i]);
+            }
+            return array;
+        } else if (componentType.equals(byte.class)) {
+            byte[] array = new byte[splitValues.length];
+            for (int i = 0; i < splitValues.length; i++) {
+                array[i] = Byte.parseByte(splitValues[i]);
+            }
+            return array;
+        } else if (componentType.equals(boolean.class)) {
+            boolean[] array = new boolean[splitValues.length];
+            for (int i = 0; i < splitValues.length; i++) {
+                array[i] = Boolean.parseBoolean(splitValues[i]);
+            }
+            return array;
+        } else if (componentType.equals(String.class)) {
+            return splitValues;
+        } else {
+            Object array = Array.newInstance(componentType, splitValues.length);
+            for (int i = 0; i < splitValues.length; i++) {
+                Array.set(array, i, getParameterValue(componentType, name, splitValues[i]));
+            }
+            return array;
+        }
+    }
+
+    /**
+     * Parses the string values to a collection or a map. Each value of a collection may contain several
+     * comma separated elements, each value of a map must be in the key=value format.
+     * Collections of int and long values are stored in primitive containers.
+     * @param clazz Parameter type
+     * @param elementType Type of the elements (values of a map)
+     * @param keyType Type of the keys of a map, null for collections
+     * @param name Name of the parameter (to provide eventual error information)
+     * @param values String values to parse
+     * @return Collection or map with parsed values
+     * @throws CmdException Thrown when parsing the value to a specified type failed
+     */
+    @SuppressWarnings("unchecked")
+    private static Object getCollectionValue(Class clazz, Class elementType, Class keyType, String name, List<String> values) throws CmdException {
+        Object result = createCollection(clazz, elementType, keyType);
+        for (String value : values) {
+            if (value == null) {
+                throw new CmdException(CmdExceptionCode.DISPATCH_EMPTY_PARAMETER, name, "Parameter cannot be empty");
+            }
+
+            if (keyType != null) {
+                int separatorIndex = value.indexOf('=');
+                if (separatorIndex <= 0) {
+                    throw new CmdException(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, name, "The value must be in the key=value format");
+                }
+                Object key = getParameterValue(keyType, name, value.substring(0, separatorIndex));
+                Object element = getParameterValue(elementType, name, value.substring(separatorIndex + 1));
+                ((Map<Object, Object>)result).put(key, element);
+                continue;
+            }
+
+            for (String element : splitValues(value)) {
+                if (result instanceof IntList) {
+                    ((IntList)result).addInt(Integer.parseInt(element));
+                } else if (result instanceof LongList) {
+                    ((LongList)result).addLong(Long.parseLong(element));
+                } else if (result instanceof IntSet) {
+                    ((IntSet)result).addInt(Integer.parseInt(element));
+                } else if (result instanceof LongSet) {
+                    ((LongSet)result).addLong(Long.parseLong(element));
+                } else {
+                    ((Collection<Object>)result).add(getParameterValue(elementType, name, element));
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates an empty collection or map for a parameter type.
+     * @param clazz Parameter type
+     * @param elementType Type of the elements (values of a map)
+     * @param keyType Type of the keys of a map, null for collections
+     * @return Empty collection or map
+     * @throws CmdException Thrown when the type is not supported
+     */
+    private static Object createCollection(Class<?> clazz, Class elementType, Class keyType) throws CmdException {
+        if (!clazz.isInterface() && !Modifier.isAbstract(clazz.getModifiers())) {
+            try {
+                return clazz.getDeclaredConstructor().newInstance();
+            } catch (InvocationTargetException e) {
+                throw new CmdException(CmdExceptionCode.DISPATCH_UNSUPPORTED_PARAMETER_TYPE, clazz.getSimpleName(), "Unable to create collection", e.getCause());
+            } catch (Exception e) {
+                throw new CmdException(CmdExceptionCode.DISPATCH_UNSUPPORTED_PARAMETER_TYPE, clazz.getSimpleName(), "Unsupported parameter type", e);
+            }
+        } else if (keyType != null && clazz.isAssignableFrom(LinkedHashMap.class)) {
+            return new LinkedHashMap<Object, Object>();
+        } else if (keyType != null && clazz.isAssignableFrom(TreeMap.class)) {
+            return new TreeMap<Object, Object>();
+        } else if (clazz.isAssignableFrom(IntList.class) && elementType.equals(int.class)) {
+            return new IntList();
+        } else if (clazz.isAssignableFrom(LongList.class) && elementType.equals(long.class)) {
+            return new LongList();
+        } else if (clazz.isAssignableFrom(IntSet.class) && elementType.equals(int.class)) {
+            return new IntSet();
+        } else if (clazz.isAssignableFrom(LongSet.class) && elementType.equals(long.class)) {
+            return new LongSet();
+        } else if (clazz.isAssignableFrom(ArrayList.class)) {
+            return new ArrayList<Object>();
+        } else if (clazz.isAssignableFrom(LinkedHashSet.class)) {
+            return new LinkedHashSet<Object>();
+        } else if (clazz.isAssignableFrom(TreeSet.class)) {
+            return new TreeSet<Object>();
         } else {
-            Array.set(array, index, value);
+            throw new CmdException(CmdExceptionCode.DISPATCH_UNSUPPORTED_PARAMETER_TYPE, clazz.getSimpleName(), "Unsupported parameter type");
+        }
+    }
+
+    /**
+     * Parses the string value to a proper parameter type, including collections and maps.
+     * @param clazz Parameter type
+     * @param elementType Type of the elements of a collection (values of a map), null for other types
+     * @param keyType Type of the keys of a map, null for other types
+     * @param name Name of the parameter (to provide eventual error information)
+     * @param value String value to parse
+     * @return Object of the proper type with parsed value
+     * @throws CmdException Thrown when parsing the value to a specified type failed
+     */
+    static Object getParameterValue(Class clazz, Class elementType, Class keyType, String name, String value) throws CmdException {
+        try {
+            if (elementType == null) {
+                return getParameterValue(clazz, name, value);
+            }
+            return getCollectionValue(clazz, elementType, keyType, name, Collections.singletonList(value));
+        } catch (NumberFormatException e) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, name, "The value must be a number");
         }
     }
 
@@ -575,7 +2788,7 @@ public class CmdParser {
      * @return Object of the proper type with parsed value
      * @throws CmdException Thrown when parsing the value to a specified type failed
      */
-    private static Object getParameterValue(Class clazz, String name, String value) throws CmdException {
+    static Object getParameterValue(Class clazz, String name, String value) throws CmdException {
         if (clazz.equals(String.class) && value != null) {
             return value;
         } else if (clazz.equals(boolean.class)) {
@@ -588,13 +2801,7 @@ public class CmdParser {
         } else if (value == null) {
             throw new CmdException(CmdExceptionCode.DISPATCH_EMPTY_PARAMETER, name, "Parameter cannot be empty");
         } else if (clazz.isArray()) {
-            String[] splitValues = value.split(",");
-            Object array = Array.newInstance(clazz.getComponentType(), splitValues.length);
-            for (int i = 0; i < splitValues.length; i++) {
-                Object elemValue = getParameterValue(clazz.getComponentType(), name, splitValues[i]);
-                setArrayValue(array, i, clazz.getComponentType(), elemValue);
-            }
-            return array;
+            return getArrayValue(clazz.getComponentType(), name, value);
         } else if (clazz.equals(byte.class)) {
             return Byte.parseByte(value);
         } else if (clazz.equals(short.class)) {
@@ -607,11 +2814,26 @@ public class CmdParser {
             return Float.parseFloat(value);
         } else if (clazz.equals(double.class)) {
             return Double.parseDouble(value);
+        } else if (clazz.equals(MappedByteBuffer.class)) {
+            return mapFile(name, value);
         } else {
             throw new CmdException(CmdExceptionCode.DISPATCH_UNSUPPORTED_PARAMETER_TYPE, clazz.getSimpleName(), "Unsupported parameter type");
         }
     }
 
+    /**
+     * Returns a default value for a specified parameter (empty collection for collection parameters).
+     * @param parameter Parameter definition
+     * @return Default value for a specified parameter
+     * @throws CmdException Thrown when the collection type is not supported
+     */
+    private static Object getDefaultValue(Parameter parameter) throws CmdException {
+        if (parameter.ElementType != null) {
+            return createCollection(parameter.Type, parameter.ElementType, parameter.KeyType);
+        }
+        return getDefaultValue(parameter.Type);
+    }
+
     /**
      * Returns a default value for a specified type.
      * @param clazz Type for which a default value should be returned
@@ -644,45 +2866,84 @@ public class CmdParser {
     /**
      * Helper class holding command information.
      */
-    private class Command {
+    private static class Command {
         public String Name;
         public String ShortName;
         public String Description;
-        public ArrayList<Parameter> Parameters;
+        public Parameter[] Parameters;
+        public OptionsHolder[] Holders;
+        public int OutputIndex;
         public boolean IsHelp;
-        public Method Method;
+        public long Timeout;
+        public int MaxConcurrency;
+        public Semaphore Bulkhead;
+        public String MethodName;
+        public volatile Method Method;
+        public BkTree OptionNameTree;
+        public volatile RadixTree<Parameter> OptionTree;
+        public ConstraintSet Constraints;
     }
 
     /**
      * Helper class holding command parameter information.
      * Options are taken from command line, parameters from annotations.
      */
-    private class Parameter {
+    private static class Parameter {
         public String Name;
         public String ShortName;
         public String Description;
         public String DefaultValue;
         public boolean IsUnnamed;
         public boolean IsRequired;
+        public boolean IsLazy;
+        public boolean IsPrefetch;
         public Class Type;
+        public Class ElementType;
+        public Class KeyType;
         public IValidator Validator;
+        public Constraint[] Constraints;
+        public int Bit;
+    }
+
+    /**
+     * Helper class holding a constraint declared by a parameter.
+     */
+    private static class Constraint {
+        public int Kind;
+        public String Name;
     }
 
     /**
      * Helper class holding global parameter information.
      * Options are taken from command line, parameters from annotations.
      */
-    private class GlobalParameter {
+    private static class GlobalParameter {
         Parameter Parameter;
-        Field Field;
+        String FieldName;
+        volatile Field Field;
+    }
+
+    /**
+     * Helper class holding command group information.
+     */
+    private static class Group {
+        public String Name;
+        public String ShortName;
+        public String Description;
+        public String MemberName;
+        public boolean IsMethod;
+        public volatile AccessibleObject Accessor;
+        public Class HandlerType;
+        public volatile CmdParser Parser;
     }
 
     /**
      * Helper class holding option information.
      * Options are taken from command line, parameters from annotations.
      */
-    private class Option {
+    static class Option {
         public String Name;
         public String Value;
+        public List<String> Values;
     }
 }
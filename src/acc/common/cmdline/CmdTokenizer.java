@@ -0,0 +1,129 @@
+package acc.common.cmdline;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits a command line into arguments using shell-like rules. Arguments are separated by whitespace,
+ * text in single quotes is taken literally, text in double quotes may contain \" and \\ escapes
+ * and outside of quotes a backslash escapes any character. Commands of a pipeline are separated by an unquoted
+ * ";;" argument, a quoted or escaped ";;" is an ordinary argument.
+ */
+public final class CmdTokenizer {
+    /**
+     * Constructor of the class (no instances are allowed).
+     */
+    private CmdTokenizer() {
+    }
+
+    /**
+     * Splits a command line into arguments.
+     * @param line Command line
+     * @return Array of arguments
+     * @throws CmdException Thrown when a quote is not closed or the line ends with a backslash
+     */
+    public static String[] tokenize(String line) throws CmdException {
+        return split(line, false).get(0);
+    }
+
+    /**
+     * Splits a command line into the arguments of the commands of a pipeline.
+     * @param line Command line
+     * @return Arguments of each command, empty arrays for empty commands (e.g. an empty line)
+     * @throws CmdException Thrown when a quote is not closed or the line ends with a backslash
+     */
+    public static List<String[]> tokenizePipeline(String line) throws CmdException {
+        return split(line, true);
+    }
+
+    /**
+     * Splits a command line into arguments.
+     * @param line Command line
+     * @param pipeline True if the line should be split into the commands of a pipeline
+     * @return Arguments of each command, a single command if the line is not split into commands
+     * @throws CmdException Thrown when a quote is not closed or the line ends with a backslash
+     */
+    private static List<String[]> split(String line, boolean pipeline) throws CmdException {
+        List<String[]> commands = new ArrayList<String[]>(1);
+        List<String> args = new ArrayList<String>();
+        StringBuilder builder = new StringBuilder();
+        boolean inArgument = false;
+        boolean quoted = false;
+        int length = line.length();
+        for (int i = 0; i < length; i++) {
+            char c = line.charAt(i);
+            if (Character.isWhitespace(c)) {
+                if (inArgument) {
+                    addArgument(commands, args, builder, pipeline && !quoted);
+                    inArgument = false;
+                    quoted = false;
+                }
+            }
+            else if (c == '\'') {
+                int end = line.indexOf('\'', i + 1);
+                if (end < 0) {
+                    throw new CmdException(CmdExceptionCode.DISPATCH_INVALID_SYNTAX, line, "Unterminated single quote");
+                }
+                builder.append(line, i + 1, end);
+                inArgument = true;
+                quoted = true;
+                i = end;
+            }
+            else if (c == '"') {
+                i++;
+                while (i < length && line.charAt(i) != '"') {
+                    char current = line.charAt(i);
+                    if (current == '\\' && i + 1 < length && (line.charAt(i + 1) == '"' || line.charAt(i + 1) == '\\')) {
+                        i++;
+                        current = line.charAt(i);
+                    }
+                    builder.append(current);
+                    i++;
+                }
+                if (i >= length) {
+                    throw new CmdException(CmdExceptionCode.DISPATCH_INVALID_SYNTAX, line, "Unterminated double quote");
+                }
+                inArgument = true;
+                quoted = true;
+            }
+            else if (c == '\\') {
+                if (i + 1 >= length) {
+                    throw new CmdException(CmdExceptionCode.DISPATCH_INVALID_SYNTAX, line, "Escape character at the end of line");
+                }
+                i++;
+                builder.append(line.charAt(i));
+                inArgument = true;
+                quoted = true;
+            }
+            else {
+                builder.append(c);
+                inArgument = true;
+            }
+        }
+
+        if (inArgument) {
+            addArgument(commands, args, builder, pipeline && !quoted);
+        }
+        commands.add(args.toArray(new String[args.size()]));
+        return commands;
+    }
+
+    /**
+     * Adds the collected argument to the arguments of the current command, or starts a new command
+     * if the argument separates commands.
+     * @param commands Arguments of the previous commands
+     * @param args Arguments of the current command
+     * @param builder Collected argument, cleared by this method
+     * @param separator True if the argument may separate commands (it's not quoted and the line is a pipeline)
+     */
+    private static void addArgument(List<String[]> commands, List<String> args, StringBuilder builder, boolean separator) {
+        if (separator && CmdParser.PipelineSeparator.contentEquals(builder)) {
+            commands.add(args.toArray(new String[args.size()]));
+            args.clear();
+        }
+        else {
+            args.add(builder.toString());
+        }
+        builder.setLength(0);
+    }
+}
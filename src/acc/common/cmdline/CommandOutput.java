@@ -0,0 +1,130 @@
+package acc.common.cmdline;
+
+import java.io.PrintStream;
+import java.util.Formatter;
+
+/**
+ * Collects the output of a single command invocation. Commands receive it by declaring a parameter
+ * of this type (without annotations), the parser creates a new buffer for each invocation and writes it
+ * to the output stream of the dispatch when the command completes, or returns it as a part of
+ * {@link DispatchResult}. Concurrent commands write to their own buffers, so they don't compete for the lock
+ * of the shared stream, and their output is never interleaved. When the deadline of a command expires,
+ * the buffer is closed, so the output written by the cancelled command afterwards is discarded.
+ */
+public final class CommandOutput {
+    /**
+     * Line separator of the platform.
+     */
+    private static final String LineSeparator = System.getProperty("line.separator");
+
+    /**
+     * Buffered text.
+     */
+    private final StringBuilder _buffer = new StringBuilder();
+
+    /**
+     * Formatter writing to the buffer, created when needed.
+     */
+    private Formatter _formatter;
+
+    /**
+     * True if the buffer is closed and further output is discarded.
+     */
+    private boolean _closed;
+
+    /**
+     * Appends the text to the output.
+     * @param value Value to append (converted using String.valueOf)
+     * @return This object
+     */
+    public synchronized CommandOutput print(Object value) {
+        if (!this._closed) {
+            this._buffer.append(value);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a line separator to the output.
+     * @return This object
+     */
+    public synchronized CommandOutput println() {
+        if (!this._closed) {
+            this._buffer.append(LineSeparator);
+        }
+        return this;
+    }
+
+    /**
+     * Appends the text followed by a line separator to the output.
+     * @param value Value to append (converted using String.valueOf)
+     * @return This object
+     */
+    public synchronized CommandOutput println(Object value) {
+        if (!this._closed) {
+            this._buffer.append(value).append(LineSeparator);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a formatted text to the output, in the same way as {@link PrintStream#printf(String, Object...)}.
+     * @param format Format string
+     * @param args Arguments referenced by the format string
+     * @return This object
+     */
+    public synchronized CommandOutput printf(String format, Object... args) {
+        if (this._closed) {
+            return this;
+        }
+        if (this._formatter == null) {
+            this._formatter = new Formatter(this._buffer);
+        }
+        this._formatter.format(format, args);
+        return this;
+    }
+
+    /**
+     * Returns the collected text.
+     * @return Text written to the output
+     */
+    public synchronized String getText() {
+        return this._buffer.toString();
+    }
+
+    /**
+     * Checks whether anything was written to the output.
+     * @return True if the output is empty
+     */
+    public synchronized boolean isEmpty() {
+        return this._buffer.length() == 0;
+    }
+
+    /**
+     * Closes the buffer, so the output written afterwards is discarded (the collected text is kept).
+     */
+    synchronized void close() {
+        this._closed = true;
+    }
+
+    /**
+     * Writes the collected text to the stream using a single write, so the lock of the stream is acquired
+     * only once per invocation.
+     * @param stream Stream to write to
+     */
+    synchronized void writeTo(PrintStream stream) {
+        if (this._buffer.length() > 0) {
+            stream.print(this._buffer);
+            stream.flush();
+        }
+    }
+
+    /**
+     * Returns the collected text.
+     * @return Text written to the output
+     */
+    @Override
+    public String toString() {
+        return this.getText();
+    }
+}
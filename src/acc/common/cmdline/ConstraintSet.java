@@ -0,0 +1,144 @@
+package acc.common.cmdline;
+
+import java.util.Arrays;
+
+/**
+ * Rules constraining which options may be specified together, compiled into bit masks. Each option of a command
+ * has a bit in the mask of present options, so checking a rule costs a few bitwise operations per 64 options.
+ * Objects of this class are not modified after they are built, so they can be checked concurrently.
+ */
+final class ConstraintSet {
+    /**
+     * Kind of rule: at most one option of the group may be specified.
+     */
+    static final int Exclusive = 0;
+
+    /**
+     * Kind of rule: at least one option of the group must be specified.
+     */
+    static final int AtLeastOne = 1;
+
+    /**
+     * Kind of rule: exactly one option of the group must be specified.
+     */
+    static final int ExactlyOne = 2;
+
+    /**
+     * Kind of rule: when the trigger option is specified, all options of the mask must be specified.
+     */
+    static final int Requires = 3;
+
+    /**
+     * Kinds of the rules.
+     */
+    private int[] _kinds = new int[0];
+
+    /**
+     * Bits of the trigger options of Requires rules, -1 for other rules.
+     */
+    private int[] _triggers = new int[0];
+
+    /**
+     * Masks of the options of the rules (without trailing empty words).
+     */
+    private long[][] _masks = new long[0][];
+
+    /**
+     * Names reported as the invalid argument when a rule is violated (group or option name).
+     */
+    private String[] _names = new String[0];
+
+    /**
+     * Messages reported when a rule is violated.
+     */
+    private String[] _messages = new String[0];
+
+    /**
+     * Adds a rule to the set.
+     * @param kind Kind of the rule
+     * @param trigger Bit of the trigger option for Requires rules, -1 for other rules
+     * @param mask Mask of the options of the rule
+     * @param name Name reported as the invalid argument
+     * @param message Message reported when the rule is violated
+     */
+    void add(int kind, int trigger, long[] mask, String name, String message) {
+        int length = mask.length;
+        while (length > 0 && mask[length - 1] == 0) {
+            length--;
+        }
+
+        int count = this._kinds.length;
+        this._kinds = Arrays.copyOf(this._kinds, count + 1);
+        this._triggers = Arrays.copyOf(this._triggers, count + 1);
+        this._masks = Arrays.copyOf(this._masks, count + 1);
+        this._names = Arrays.copyOf(this._names, count + 1);
+        this._messages = Arrays.copyOf(this._messages, count + 1);
+        this._kinds[count] = kind;
+        this._triggers[count] = trigger;
+        this._masks[count] = Arrays.copyOf(mask, length);
+        this._names[count] = name;
+        this._messages[count] = message;
+    }
+
+    /**
+     * Checks whether the set contains any rules.
+     * @return True if there are no rules
+     */
+    boolean isEmpty() {
+        return this._kinds.length == 0;
+    }
+
+    /**
+     * Checks all rules against the mask of present options.
+     * @param present Mask of the specified options
+     * @throws CmdException Thrown when a rule is violated
+     */
+    void check(long[] present) throws CmdException {
+        for (int i = 0; i < this._kinds.length; i++) {
+            long[] mask = this._masks[i];
+            boolean violated;
+            if (this._kinds[i] == Requires) {
+                int trigger = this._triggers[i];
+                violated = false;
+                if ((present[trigger >>> 6] & (1L << trigger)) != 0) {
+                    for (int word = 0; word < mask.length; word++) {
+                        if ((present[word] & mask[word]) != mask[word]) {
+                            violated = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            else {
+                int count = 0;
+                for (int word = 0; word < mask.length; word++) {
+                    count += Long.bitCount(present[word] & mask[word]);
+                }
+                violated = this._kinds[i] == Exclusive ? count > 1 : this._kinds[i] == AtLeastOne ? count == 0 : count != 1;
+            }
+
+            if (violated) {
+                throw new CmdException(CmdExceptionCode.DISPATCH_CONSTRAINT_VIOLATION, this._names[i], this._messages[i]);
+            }
+        }
+    }
+
+    /**
+     * Sets the bit of an option in the mask.
+     * @param mask Mask of options
+     * @param bit Bit of the option
+     */
+    static void set(long[] mask, int bit) {
+        mask[bit >>> 6] |= 1L << bit;
+    }
+
+    /**
+     * Checks whether the bit of an option is set in the mask.
+     * @param mask Mask of options
+     * @param bit Bit of the option
+     * @return True if the bit is set
+     */
+    static boolean isSet(long[] mask, int bit) {
+        return (mask[bit >>> 6] & (1L << bit)) != 0;
+    }
+}
@@ -0,0 +1,130 @@
+package acc.common.cmdline;
+
+import java.io.PrintStream;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Defines options of a single dispatch of command line arguments.
+ */
+public class DispatchOptions {
+    /**
+     * Deadline of the command in milliseconds, 0 to use the default deadline of the command.
+     */
+    private long _timeout;
+
+    /**
+     * Executor running commands with a deadline, null to use the executor of the parser.
+     */
+    private ExecutorService _executor;
+
+    /**
+     * True if independent segments of a pipeline should run in parallel.
+     */
+    private boolean _parallel;
+
+    /**
+     * Stream receiving the output of the commands, null to use System.out.
+     */
+    private PrintStream _output;
+
+    /**
+     * True if the output of the command should be returned in the result instead of written to the stream.
+     */
+    private boolean _captureOutput;
+
+    /**
+     * Returns the deadline of the command.
+     * @return Deadline in milliseconds, 0 if the default deadline of the command is used
+     */
+    public long getTimeout() {
+        return this._timeout;
+    }
+
+    /**
+     * Sets the deadline of the command, which overrides the deadline defined by the Timeout annotation.
+     * @param timeout Deadline in milliseconds, 0 to use the default deadline of the command
+     * @return This object
+     */
+    public DispatchOptions setTimeout(long timeout) {
+        this._timeout = timeout;
+        return this;
+    }
+
+    /**
+     * Returns the executor running commands with a deadline.
+     * @return Executor, null if the executor of the parser is used
+     */
+    public ExecutorService getExecutor() {
+        return this._executor;
+    }
+
+    /**
+     * Sets the executor running commands with a deadline. Commands are cancelled by interrupting their threads,
+     * so the executor must not run the commands on the calling thread.
+     * @param executor Executor, null to use the executor of the parser
+     * @return This object
+     */
+    public DispatchOptions setExecutor(ExecutorService executor) {
+        this._executor = executor;
+        return this;
+    }
+
+    /**
+     * Returns whether segments of a pipeline run in parallel.
+     * @return True if segments of a pipeline run in parallel
+     */
+    public boolean isParallel() {
+        return this._parallel;
+    }
+
+    /**
+     * Sets whether segments of a pipeline run in parallel. Parallel segments share the object to which the commands
+     * are dispatched, so segments of commands with global parameters run one at a time (global parameters are stored
+     * in the fields of the shared object), other segments run concurrently and should be independent.
+     * @param parallel True if segments of a pipeline should run in parallel
+     * @return This object
+     */
+    public DispatchOptions setParallel(boolean parallel) {
+        this._parallel = parallel;
+        return this;
+    }
+
+    /**
+     * Returns the stream receiving the output of the commands.
+     * @return Output stream, null if System.out is used
+     */
+    public PrintStream getOutput() {
+        return this._output;
+    }
+
+    /**
+     * Sets the stream receiving the output of the commands (e.g. a stream of a socket). The output of each command
+     * is buffered and written to the stream at once when the command completes, segments of a parallel pipeline
+     * are written in the order of the segments.
+     * @param output Output stream, null to use System.out
+     * @return This object
+     */
+    public DispatchOptions setOutput(PrintStream output) {
+        this._output = output;
+        return this;
+    }
+
+    /**
+     * Returns whether the output of the command is captured.
+     * @return True if the output is returned in the result of {@link CmdParser#tryDispatch(String[], DispatchOptions)}
+     */
+    public boolean isCaptureOutput() {
+        return this._captureOutput;
+    }
+
+    /**
+     * Sets whether the output of the command is returned in the result of {@link CmdParser#tryDispatch(String[], DispatchOptions)}
+     * instead of written to the output stream.
+     * @param captureOutput True if the output should be captured
+     * @return This object
+     */
+    public DispatchOptions setCaptureOutput(boolean captureOutput) {
+        this._captureOutput = captureOutput;
+        return this;
+    }
+}
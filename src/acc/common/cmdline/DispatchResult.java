@@ -0,0 +1,147 @@
+package acc.common.cmdline;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Holds the outcome of a dispatch returned by {@link CmdParser#tryDispatch(String[])}.
+ * Objects of this class are immutable.
+ */
+public final class DispatchResult {
+    /**
+     * Result of a successful dispatch.
+     */
+    private static final DispatchResult Success = new DispatchResult(null, null, null, Collections.<String>emptyList(), null);
+
+    /**
+     * Error code, null if the dispatch succeeded.
+     */
+    private final CmdExceptionCode _code;
+
+    /**
+     * Argument which caused the error, may be null.
+     */
+    private final String _invalidArgument;
+
+    /**
+     * Error message, null if the dispatch succeeded.
+     */
+    private final String _message;
+
+    /**
+     * Names similar to the invalid argument.
+     */
+    private final List<String> _suggestions;
+
+    /**
+     * Captured output of the command, null if the output was not captured.
+     */
+    private final String _output;
+
+    /**
+     * Constructor of the class.
+     * @param code Error code, null if the dispatch succeeded
+     * @param invalidArgument Argument which caused the error
+     * @param message Error message
+     * @param suggestions Names similar to the invalid argument
+     * @param output Captured output of the command, null if the output was not captured
+     */
+    private DispatchResult(CmdExceptionCode code, String invalidArgument, String message, List<String> suggestions, String output) {
+        this._code = code;
+        this._invalidArgument = invalidArgument;
+        this._message = message;
+        this._suggestions = suggestions;
+        this._output = output;
+    }
+
+    /**
+     * Creates the result of a successful dispatch with the captured output.
+     * @param output Captured output of the command, null if the output was not captured
+     * @return Result of a successful dispatch
+     */
+    static DispatchResult success(String output) {
+        if (output == null) {
+            return Success;
+        }
+        return new DispatchResult(null, null, null, Collections.<String>emptyList(), output);
+    }
+
+    /**
+     * Creates the result of a failed dispatch.
+     * @param error Error of the dispatch
+     * @return Result of a failed dispatch
+     */
+    static DispatchResult failure(CmdException error) {
+        return failure(error, null);
+    }
+
+    /**
+     * Creates the result of a failed dispatch with the captured output.
+     * @param error Error of the dispatch
+     * @param output Output written by the command before it failed, null if the output was not captured
+     * @return Result of a failed dispatch
+     */
+    static DispatchResult failure(CmdException error, String output) {
+        return new DispatchResult(error.getErrorCode(), error.getInvalidArgument(), error.getMessage(), error.getSuggestions(), output);
+    }
+
+    /**
+     * Creates the result of a failed dispatch.
+     * @param code Error code
+     * @param invalidArgument Argument which caused the error, may be null
+     * @param message Error message
+     * @param output Output written by the command before it failed, null if the output was not captured
+     * @return Result of a failed dispatch
+     */
+    static DispatchResult failure(CmdExceptionCode code, String invalidArgument, String message, String output) {
+        return new DispatchResult(code, invalidArgument, message, Collections.<String>emptyList(), output);
+    }
+
+    /**
+     * Checks whether the dispatch succeeded.
+     * @return True if the command was executed successfully
+     */
+    public boolean isSuccess() {
+        return this._code == null;
+    }
+
+    /**
+     * Returns the error code.
+     * @return Error code, null if the dispatch succeeded
+     */
+    public CmdExceptionCode getErrorCode() {
+        return this._code;
+    }
+
+    /**
+     * Returns the argument which caused the error.
+     * @return Argument which caused the error, may be null
+     */
+    public String getInvalidArgument() {
+        return this._invalidArgument;
+    }
+
+    /**
+     * Returns the error message.
+     * @return Error message, null if the dispatch succeeded
+     */
+    public String getMessage() {
+        return this._message;
+    }
+
+    /**
+     * Returns names similar to the invalid argument.
+     * @return List of suggested names, empty if there are no suggestions
+     */
+    public List<String> getSuggestions() {
+        return this._suggestions;
+    }
+
+    /**
+     * Returns the output of the command, captured when requested by {@link DispatchOptions#setCaptureOutput(boolean)}.
+     * @return Captured output, null if the output was not captured
+     */
+    public String getOutput() {
+        return this._output;
+    }
+}
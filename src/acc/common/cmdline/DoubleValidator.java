@@ -24,6 +24,22 @@ public class DoubleValidator implements IValidator {
         this._max = max;
     }
 
+    /**
+     * Returns the minimum value.
+     * @return Minimum value (inclusive)
+     */
+    public double getMin() {
+        return this._min;
+    }
+
+    /**
+     * Returns the maximum value.
+     * @return Maximum value (inclusive)
+     */
+    public double getMax() {
+        return this._max;
+    }
+
     /**
      * Validates whether the specified value is between the given range.
      * @param value Value to validate
@@ -39,4 +55,29 @@ public class DoubleValidator implements IValidator {
         // Success, error message is null
         return null;
     }
+
+    /**
+     * Checks whether the other object is a validator with the same settings.
+     * @param other Object to compare with
+     * @return True if the validators are equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof DoubleValidator)) {
+            return false;
+        }
+        DoubleValidator validator = (DoubleValidator)other;
+        return Double.compare(this._min, validator._min) == 0 && Double.compare(this._max, validator._max) == 0;
+    }
+
+    /**
+     * Returns a hash code of the validator settings.
+     * @return Hash code
+     */
+    @Override
+    public int hashCode() {
+        long min = Double.doubleToLongBits(this._min);
+        long max = Double.doubleToLongBits(this._max);
+        return (int)(min ^ (min >>> 32)) * 31 + (int)(max ^ (max >>> 32));
+    }
 }
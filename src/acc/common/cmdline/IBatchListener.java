@@ -0,0 +1,14 @@
+package acc.common.cmdline;
+
+/**
+ * Defines a listener receiving outcomes of command lines dispatched in a batch.
+ */
+public interface IBatchListener {
+    /**
+     * Called when a command line of the batch was dispatched.
+     * @param lineNumber Number of the line (starting from 1)
+     * @param line Text of the line
+     * @param error Null if the command line was dispatched successfully, error otherwise
+     */
+    void lineCompleted(long lineNumber, String line, CmdException error);
+}
@@ -0,0 +1,77 @@
+package acc.common.cmdline;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Holds a parameter value, which is converted and validated only when it's used for the first time.
+ * Commands can declare parameters of type {@code Lazy<T>} to avoid converting values they might not need.
+ * The value (or the error) is computed only once, objects of this class are thread-safe.
+ * @param <T> Type of the value
+ */
+public final class Lazy<T> {
+    /**
+     * Computation of the value, null when the value is already computed.
+     */
+    private Callable<? extends T> _evaluator;
+
+    /**
+     * Computed value.
+     */
+    private T _value;
+
+    /**
+     * Error of the computation, null if the computation succeeded.
+     */
+    private CmdException _error;
+
+    /**
+     * Constructor of the class.
+     * @param evaluator Computation of the value
+     */
+    public Lazy(Callable<? extends T> evaluator) {
+        this._evaluator = evaluator;
+    }
+
+    /**
+     * Creates an object holding an already computed value.
+     * @param value Value
+     * @param <T> Type of the value
+     * @return Object holding the value
+     */
+    public static <T> Lazy<T> of(T value) {
+        Lazy<T> result = new Lazy<T>(null);
+        result._value = value;
+        return result;
+    }
+
+    /**
+     * Returns the value, the value is computed when this method is called for the first time.
+     * @return Value
+     * @throws CmdException Thrown when the value could not be converted or is not correct
+     */
+    public synchronized T get() throws CmdException {
+        if (this._evaluator != null) {
+            try {
+                this._value = this._evaluator.call();
+            } catch (CmdException e) {
+                this._error = e;
+            } catch (Exception e) {
+                this._error = new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, "Unable to compute the value", e);
+            }
+            this._evaluator = null;
+        }
+
+        if (this._error != null) {
+            throw this._error;
+        }
+        return this._value;
+    }
+
+    /**
+     * Checks whether the value was already computed.
+     * @return True if the value was computed
+     */
+    public synchronized boolean isEvaluated() {
+        return this._evaluator == null;
+    }
+}
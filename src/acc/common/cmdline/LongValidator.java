@@ -24,6 +24,22 @@ public class LongValidator implements IValidator {
         this._max = max;
     }
 
+    /**
+     * Returns the minimum value.
+     * @return Minimum value (inclusive)
+     */
+    public long getMin() {
+        return this._min;
+    }
+
+    /**
+     * Returns the maximum value.
+     * @return Maximum value (inclusive)
+     */
+    public long getMax() {
+        return this._max;
+    }
+
     /**
      * Validates whether the specified value is between the given range.
      * @param value Value to validate
@@ -31,7 +47,7 @@ public class LongValidator implements IValidator {
      */
     @Override
     public String validateValue(Object value) {
-        long testedValue = Long.valueOf(value.toString());
+        long testedValue = value instanceof Number ? ((Number)value).longValue() : Long.parseLong(value.toString());
         if (testedValue < this._min || testedValue > this._max) {
             return String.format("The value must be between %d and %d", this._min, this._max);
         }
@@ -39,4 +55,27 @@ public class LongValidator implements IValidator {
         // Success, error message is null
         return null;
     }
+
+    /**
+     * Checks whether the other object is a validator with the same settings.
+     * @param other Object to compare with
+     * @return True if the validators are equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof LongValidator)) {
+            return false;
+        }
+        LongValidator validator = (LongValidator)other;
+        return this._min == validator._min && this._max == validator._max;
+    }
+
+    /**
+     * Returns a hash code of the validator settings.
+     * @return Hash code
+     */
+    @Override
+    public int hashCode() {
+        return (int)(this._min ^ (this._min >>> 32)) * 31 + (int)(this._max ^ (this._max >>> 32));
+    }
 }
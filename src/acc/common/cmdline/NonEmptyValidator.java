@@ -19,4 +19,23 @@ public class NonEmptyValidator implements IValidator {
         // Success, error message is null
         return null;
     }
+
+    /**
+     * Checks whether the other object is a validator with the same settings.
+     * @param other Object to compare with
+     * @return True if the validators are equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof NonEmptyValidator;
+    }
+
+    /**
+     * Returns a hash code of the validator settings.
+     * @return Hash code
+     */
+    @Override
+    public int hashCode() {
+        return NonEmptyValidator.class.hashCode();
+    }
 }
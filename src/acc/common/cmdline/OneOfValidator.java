@@ -0,0 +1,240 @@
+package acc.common.cmdline;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Implements a validator accepting only one of the allowed values. Values are kept in a sorted array,
+ * so checking a value costs a binary search even for sets with hundreds of thousands of values.
+ */
+public class OneOfValidator implements IValidator {
+    /**
+     * Maximal number of values listed in the help text and in the error message.
+     */
+    static final int MaxListedValues = 10;
+
+    /**
+     * Comparator of the case-sensitive values.
+     */
+    private static final Comparator<String> NaturalOrder = new Comparator<String>() {
+        public int compare(String first, String second) {
+            return first.compareTo(second);
+        }
+    };
+
+    /**
+     * Allowed values sorted by the comparator (without duplicates).
+     */
+    private final String[] _values;
+
+    /**
+     * True if values are compared ignoring the case.
+     */
+    private final boolean _ignoreCase;
+
+    /**
+     * Resource from which the values were loaded, null if the values were specified directly.
+     */
+    private final String _resource;
+
+    /**
+     * Class used to resolve the resource, null if the values were specified directly.
+     */
+    private final Class<?> _owner;
+
+    /**
+     * Hash code of the settings (computed once, since the set of values can be large).
+     */
+    private final int _hashCode;
+
+    /**
+     * Constructor of the class.
+     * @param values Allowed values
+     * @param ignoreCase True if values should be compared ignoring the case
+     */
+    public OneOfValidator(String[] values, boolean ignoreCase) {
+        this(values, ignoreCase, null, null);
+    }
+
+    /**
+     * Constructor of the class.
+     * @param values Allowed values
+     * @param ignoreCase True if values should be compared ignoring the case
+     * @param resource Resource from which the values were loaded, null if the values were specified directly
+     * @param owner Class used to resolve the resource, null if the values were specified directly
+     */
+    private OneOfValidator(String[] values, boolean ignoreCase, String resource, Class<?> owner) {
+        Comparator<String> comparator = getComparator(ignoreCase);
+        String[] sortedValues = values.clone();
+        Arrays.sort(sortedValues, comparator);
+        int count = 0;
+        for (String value : sortedValues) {
+            if (count == 0 || comparator.compare(sortedValues[count - 1], value) != 0) {
+                sortedValues[count++] = value;
+            }
+        }
+
+        this._values = count == sortedValues.length ? sortedValues : Arrays.copyOf(sortedValues, count);
+        this._ignoreCase = ignoreCase;
+        this._resource = resource;
+        this._owner = owner;
+        int hashCode = 31 * Arrays.hashCode(this._values) + (ignoreCase ? 1 : 0);
+        if (resource != null) {
+            hashCode = 31 * (31 * hashCode + resource.hashCode()) + owner.hashCode();
+        }
+        this._hashCode = hashCode;
+    }
+
+    /**
+     * Creates a validator with the values loaded from a resource. The resource contains one value per line,
+     * empty lines and lines starting with '#' are ignored.
+     * @param owner Class used to resolve the resource (see {@link Class#getResourceAsStream(String)})
+     * @param resource Name of the resource
+     * @param ignoreCase True if values should be compared ignoring the case
+     * @return Validator
+     * @throws IOException Thrown when the resource doesn't exist or could not be read
+     */
+    public static OneOfValidator load(Class<?> owner, String resource, boolean ignoreCase) throws IOException {
+        InputStream input = owner.getResourceAsStream(resource);
+        if (input == null) {
+            throw new IOException("Resource " + resource + " was not found");
+        }
+
+        List<String> values = new ArrayList<String>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.length() > 0 && line.charAt(0) != '#') {
+                    values.add(line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new OneOfValidator(values.toArray(new String[values.size()]), ignoreCase, resource, owner);
+    }
+
+    /**
+     * Returns the comparator ordering the values.
+     * @param ignoreCase True if values are compared ignoring the case
+     * @return Comparator
+     */
+    private static Comparator<String> getComparator(boolean ignoreCase) {
+        return ignoreCase ? String.CASE_INSENSITIVE_ORDER : NaturalOrder;
+    }
+
+    /**
+     * Returns the allowed values.
+     * @return Sorted list of allowed values
+     */
+    public List<String> getValues() {
+        return Collections.unmodifiableList(Arrays.asList(this._values));
+    }
+
+    /**
+     * Returns whether values are compared ignoring the case.
+     * @return True if values are compared ignoring the case
+     */
+    public boolean isIgnoreCase() {
+        return this._ignoreCase;
+    }
+
+    /**
+     * Returns the resource from which the values were loaded.
+     * @return Name of the resource, null if the values were specified directly
+     */
+    public String getResource() {
+        return this._resource;
+    }
+
+    /**
+     * Returns the class used to resolve the resource.
+     * @return Class resolving the resource, null if the values were specified directly
+     */
+    public Class<?> getOwner() {
+        return this._owner;
+    }
+
+    /**
+     * Formats the allowed values for the help text.
+     * @param limit Maximal number of listed values
+     * @return Values separated by '|', shortened if there are more values than the limit
+     */
+    public String formatValues(int limit) {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < this._values.length && i < limit; i++) {
+            if (i > 0) {
+                builder.append('|');
+            }
+            builder.append(this._values[i]);
+        }
+        if (this._values.length > limit) {
+            builder.append("|... (");
+            builder.append(this._values.length);
+            builder.append(" values)");
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Validates whether a specified value is one of the allowed values.
+     * @param value Value to validate
+     * @return Error message when validation failed, null otherwise
+     */
+    @Override
+    public String validateValue(Object value) {
+        if (value == null) {
+            return "The value cannot be null";
+        }
+        if (Arrays.binarySearch(this._values, String.valueOf(value), getComparator(this._ignoreCase)) < 0) {
+            if (this._values.length <= MaxListedValues) {
+                return "The value must be one of: " + this.formatValues(MaxListedValues).replace("|", ", ");
+            }
+            return "The value is not one of the " + this._values.length + " allowed values";
+        }
+
+        // Success, error message is null
+        return null;
+    }
+
+    /**
+     * Checks whether the other object is a validator with the same settings. Validators loaded from a resource
+     * are equal only to validators loaded from the same resource, since the schema cache stores the resource
+     * instead of the values.
+     * @param other Object to compare with
+     * @return True if the validators are equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof OneOfValidator)) {
+            return false;
+        }
+        OneOfValidator validator = (OneOfValidator)other;
+        if (this._resource == null) {
+            if (validator._resource != null) {
+                return false;
+            }
+        } else if (!this._resource.equals(validator._resource) || this._owner != validator._owner) {
+            return false;
+        }
+        return this._hashCode == validator._hashCode && this._ignoreCase == validator._ignoreCase && Arrays.equals(this._values, validator._values);
+    }
+
+    /**
+     * Returns a hash code of the validator settings.
+     * @return Hash code
+     */
+    @Override
+    public int hashCode() {
+        return this._hashCode;
+    }
+}
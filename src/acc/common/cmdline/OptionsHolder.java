@@ -0,0 +1,126 @@
+package acc.common.cmdline;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+
+/**
+ * Helper class holding information about a command parameter, which holds a group of options (see
+ * {@link acc.common.cmdline.annotation.Options}). The options are stored among the other parameters of the command,
+ * the holder object is created from their values using the cached constructor of the holder type.
+ */
+final class OptionsHolder {
+    /**
+     * Position of the parameter in the command's method.
+     */
+    public int Index;
+
+    /**
+     * Index of the first option of the holder among the parameters of the command.
+     */
+    public int First;
+
+    /**
+     * Number of options of the holder.
+     */
+    public int Count;
+
+    /**
+     * Type of the holder.
+     */
+    public Class<?> Type;
+
+    /**
+     * Constructor of the holder (looked up when used for the first time).
+     */
+    public volatile Constructor<?> Constructor;
+
+    /**
+     * Creates arguments of the command's method from the values of the command parameters.
+     * @param holders Holders of the command (ordered by the position), null if the command has no holders
+     * @param values Values of the command parameters
+     * @return Arguments of the command's method
+     * @throws CmdException Thrown when a holder object could not be created
+     */
+    static Object[] toArguments(OptionsHolder[] holders, Object[] values) throws CmdException {
+        if (holders == null) {
+            return values;
+        }
+
+        Object[] arguments = new Object[getArgumentCount(holders, values.length)];
+        int valueIndex = 0;
+        int holderIndex = 0;
+        for (int i = 0; i < arguments.length; i++) {
+            if (holderIndex < holders.length && holders[holderIndex].Index == i) {
+                OptionsHolder holder = holders[holderIndex++];
+                Object[] holderValues = new Object[holder.Count];
+                System.arraycopy(values, valueIndex, holderValues, 0, holder.Count);
+                arguments[i] = holder.create(holderValues);
+                valueIndex += holder.Count;
+            }
+            else {
+                arguments[i] = values[valueIndex++];
+            }
+        }
+        return arguments;
+    }
+
+    /**
+     * Returns types of the command's method parameters from the types of the command parameters.
+     * @param holders Holders of the command (ordered by the position), null if the command has no holders
+     * @param types Types of the command parameters
+     * @return Types of the command's method parameters
+     */
+    static Class[] toParameterTypes(OptionsHolder[] holders, Class[] types) {
+        if (holders == null) {
+            return types;
+        }
+
+        Class[] parameterTypes = new Class[getArgumentCount(holders, types.length)];
+        int valueIndex = 0;
+        int holderIndex = 0;
+        for (int i = 0; i < parameterTypes.length; i++) {
+            if (holderIndex < holders.length && holders[holderIndex].Index == i) {
+                OptionsHolder holder = holders[holderIndex++];
+                parameterTypes[i] = holder.Type;
+                valueIndex += holder.Count;
+            }
+            else {
+                parameterTypes[i] = types[valueIndex++];
+            }
+        }
+        return parameterTypes;
+    }
+
+    /**
+     * Returns the number of the command's method parameters.
+     * @param holders Holders of the command
+     * @param valueCount Number of the command parameters
+     * @return Number of the command's method parameters
+     */
+    private static int getArgumentCount(OptionsHolder[] holders, int valueCount) {
+        int count = valueCount;
+        for (OptionsHolder holder : holders) {
+            count -= holder.Count - 1;
+        }
+        return count;
+    }
+
+    /**
+     * Creates the holder object.
+     * @param values Values of the options of the holder
+     * @return Holder object
+     * @throws CmdException Thrown when the object could not be created
+     */
+    private Object create(Object[] values) throws CmdException {
+        try {
+            return this.Constructor.newInstance(values);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof CmdException) {
+                throw (CmdException)e.getCause();
+            }
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, this.Type.getSimpleName(), "Unable to create options object", e.getCause());
+        } catch (Exception e) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, this.Type.getSimpleName(), "Unable to create options object", e);
+        }
+    }
+}
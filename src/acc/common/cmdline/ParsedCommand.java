@@ -0,0 +1,506 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.collections.IntList;
+import acc.common.cmdline.collections.IntSet;
+import acc.common.cmdline.collections.LongList;
+import acc.common.cmdline.collections.LongSet;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Array;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.MappedByteBuffer;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Holds a command resolved from command line arguments together with its converted and validated values.
+ * Objects of this class are immutable, so they can be created on one thread and executed on another one.
+ * Mutable values (arrays, collections, maps and buffers) are copied before they are passed to the command
+ * or returned by {@link #getArguments()}, so changing them doesn't affect later executions of the command.
+ */
+public final class ParsedCommand {
+    /**
+     * Name of the resolved command (or command group).
+     */
+    private final String _commandName;
+
+    /**
+     * Parser which created the command (it runs commands with a deadline on its executor).
+     */
+    private final CmdParser _parser;
+
+    /**
+     * Method implementing the command, null for command groups.
+     */
+    private final Method _method;
+
+    /**
+     * Default deadline of the command in milliseconds, 0 if not defined.
+     */
+    private final long _timeout;
+
+    /**
+     * Semaphore limiting concurrent executions of the command, null if not limited.
+     */
+    private final Semaphore _bulkhead;
+
+    /**
+     * Field or method providing the handler object of the command group, null for commands.
+     */
+    private final AccessibleObject _groupAccessor;
+
+    /**
+     * Command parsed by the command group, null for commands.
+     */
+    private final ParsedCommand _child;
+
+    /**
+     * Options holders of the command's method, null if the method has no options holders.
+     */
+    private final OptionsHolder[] _holders;
+
+    /**
+     * Position of the output parameter in the arguments, -1 if the command has no output parameter.
+     */
+    private final int _outputIndex;
+
+    /**
+     * Converted values of the command parameters (options of options holders are stored individually).
+     */
+    private final Object[] _arguments;
+
+    /**
+     * Fields of the global parameters.
+     */
+    private final Field[] _globalFields;
+
+    /**
+     * Converted values of the global parameters (in the same order as fields).
+     */
+    private final Object[] _globalValues;
+
+    /**
+     * Constructor of the class.
+     * @param parser Parser which created the command
+     * @param commandName Name of the resolved command
+     * @param method Method implementing the command
+     * @param timeout Default deadline of the command in milliseconds, 0 if not defined
+     * @param bulkhead Semaphore limiting concurrent executions of the command, null if not limited
+     * @param holders Options holders of the command's method, null if the method has no options holders
+     * @param outputIndex Position of the output parameter in the arguments, -1 if the command has no output parameter
+     * @param arguments Converted values of the command parameters
+     * @param globalFields Fields of the global parameters
+     * @param globalValues Converted values of the global parameters
+     */
+    ParsedCommand(CmdParser parser, String commandName, Method method, long timeout, Semaphore bulkhead, OptionsHolder[] holders, int outputIndex, Object[] arguments, Field[] globalFields, Object[] globalValues) {
+        this(parser, commandName, method, timeout, bulkhead, null, null, holders, outputIndex, arguments, globalFields, globalValues);
+    }
+
+    /**
+     * Constructor of the class used for commands of command groups.
+     * @param parser Parser which created the command
+     * @param groupName Name of the command group
+     * @param groupAccessor Field or method providing the handler object of the command group
+     * @param child Command parsed by the command group
+     * @param globalFields Fields of the global parameters
+     * @param globalValues Converted values of the global parameters
+     */
+    ParsedCommand(CmdParser parser, String groupName, AccessibleObject groupAccessor, ParsedCommand child, Field[] globalFields, Object[] globalValues) {
+        this(parser, groupName + " " + child.getCommandName(), null, child.getTimeout(), child.getBulkhead(), groupAccessor, child, null, -1, new Object[0], globalFields, globalValues);
+    }
+
+    /**
+     * Constructor of the class.
+     * @param parser Parser which created the command
+     * @param commandName Name of the resolved command
+     * @param method Method implementing the command, null for command groups
+     * @param timeout Default deadline of the command in milliseconds, 0 if not defined
+     * @param bulkhead Semaphore limiting concurrent executions of the command, null if not limited
+     * @param groupAccessor Field or method providing the handler object of the command group, null for commands
+     * @param child Command parsed by the command group, null for commands
+     * @param holders Options holders of the command's method, null if the method has no options holders
+     * @param outputIndex Position of the output parameter in the arguments, -1 if the command has no output parameter
+     * @param arguments Converted values of the command parameters
+     * @param globalFields Fields of the global parameters
+     * @param globalValues Converted values of the global parameters
+     */
+    private ParsedCommand(CmdParser parser, String commandName, Method method, long timeout, Semaphore bulkhead, AccessibleObject groupAccessor, ParsedCommand child, OptionsHolder[] holders, int outputIndex, Object[] arguments, Field[] globalFields, Object[] globalValues) {
+        this._commandName = commandName;
+        this._parser = parser;
+        this._method = method;
+        this._timeout = timeout;
+        this._bulkhead = bulkhead;
+        this._groupAccessor = groupAccessor;
+        this._child = child;
+        this._holders = holders;
+        this._outputIndex = outputIndex;
+        this._arguments = arguments;
+        this._globalFields = globalFields;
+        this._globalValues = globalValues;
+    }
+
+    /**
+     * Returns the name of the resolved command (prefixed with the names of the command groups).
+     * @return Name of the resolved command
+     */
+    public String getCommandName() {
+        return this._commandName;
+    }
+
+    /**
+     * Returns a copy of the converted values of the command parameters. Options of options holders
+     * are returned individually, in the order of the holder's constructor parameters.
+     * @return Converted values of the command parameters
+     * @throws CmdException Thrown when a value could not be copied
+     */
+    public Object[] getArguments() throws CmdException {
+        if (this._child != null) {
+            return this._child.getArguments();
+        }
+        Object[] arguments = this._arguments.clone();
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = copyValue(arguments[i]);
+        }
+        return arguments;
+    }
+
+    /**
+     * Creates a copy of this command with different values.
+     * @param arguments Converted arguments of the command's method
+     * @param globalValues Converted values of the global parameters
+     * @param child Command parsed by the command group, null for commands
+     * @return Copy of the command
+     */
+    ParsedCommand withValues(Object[] arguments, Object[] globalValues, ParsedCommand child) {
+        return new ParsedCommand(this._parser, this._commandName, this._method, this._timeout, this._bulkhead, this._groupAccessor, child, this._holders, this._outputIndex, arguments, this._globalFields, globalValues);
+    }
+
+    /**
+     * Returns the default deadline of the command.
+     * @return Deadline in milliseconds, 0 if not defined
+     */
+    long getTimeout() {
+        return this._timeout;
+    }
+
+    /**
+     * Returns the semaphore limiting concurrent executions of the command.
+     * @return Semaphore, null if not limited
+     */
+    Semaphore getBulkhead() {
+        return this._bulkhead;
+    }
+
+    /**
+     * Returns the command parsed by the command group.
+     * @return Parsed command, null for commands
+     */
+    ParsedCommand getChild() {
+        return this._child;
+    }
+
+    /**
+     * Returns a copy of the converted arguments of this level (without descending into command groups).
+     * @return Converted arguments
+     */
+    Object[] getLevelArguments() {
+        return this._arguments.clone();
+    }
+
+    /**
+     * Returns a copy of the converted values of the global parameters.
+     * @return Converted values of the global parameters
+     */
+    Object[] getGlobalValues() {
+        return this._globalValues.clone();
+    }
+
+    /**
+     * Sets the global parameters on the specified object and invokes the command.
+     * Note that global parameters are stored in the fields of the object, so executing several commands
+     * concurrently on the same object is safe only if they don't rely on global parameters.
+     * Output of the command is written to System.out when the command completes. The deadline and the concurrency
+     * limit of the command are respected as in {@link CmdParser#dispatch(String[], DispatchOptions)}.
+     * @param impl Object on which the command should be invoked
+     * @throws CmdException Thrown when the method could not be invoked for some reason, the command failed with CmdException,
+     * the deadline expired or the concurrency limit of the command was reached
+     */
+    public void execute(Object impl) throws CmdException {
+        CommandOutput output = new CommandOutput();
+        try {
+            this.execute(impl, output);
+        } finally {
+            output.writeTo(System.out);
+        }
+    }
+
+    /**
+     * Sets the global parameters on the specified object and invokes the command, which writes its output
+     * to the specified buffer. The deadline and the concurrency limit of the command are respected
+     * as in {@link CmdParser#dispatch(String[], DispatchOptions)}, when the deadline expires the buffer is closed
+     * and the output written by the command afterwards is discarded.
+     * @param impl Object on which the command should be invoked
+     * @param output Buffer passed to the output parameter of the command
+     * @throws CmdException Thrown when the method could not be invoked for some reason, the command failed with CmdException,
+     * the deadline expired or the concurrency limit of the command was reached
+     */
+    public void execute(Object impl, CommandOutput output) throws CmdException {
+        this._parser.execute(this, impl, new DispatchOptions(), output);
+    }
+
+    /**
+     * Sets the global parameters on the specified object and invokes the command on the current thread,
+     * without the deadline and the concurrency limit. Commands with global parameters hold the lock,
+     * so concurrent commands can't change the global parameters before the command reads them.
+     * @param impl Object on which the command should be invoked
+     * @param output Buffer passed to the output parameter of the command
+     * @param globalLock Lock held while the global parameters are set and the command runs, null if not needed
+     * @throws CmdException Thrown when the method could not be invoked for some reason or the command failed with CmdException
+     */
+    void invoke(Object impl, CommandOutput output, Object globalLock) throws CmdException {
+        if (globalLock == null || !this.hasGlobalValues()) {
+            this.invoke(impl, output);
+            return;
+        }
+        synchronized (globalLock) {
+            this.invoke(impl, output);
+        }
+    }
+
+    /**
+     * Checks whether the command sets global parameters (of any level of command groups).
+     * @return True if the command sets global parameters
+     */
+    private boolean hasGlobalValues() {
+        return this._globalFields.length > 0 || (this._child != null && this._child.hasGlobalValues());
+    }
+
+    /**
+     * Sets the global parameters on the specified object and invokes the command on the current thread,
+     * without the deadline and the concurrency limit.
+     * @param impl Object on which the command should be invoked
+     * @param output Buffer passed to the output parameter of the command
+     * @throws CmdException Thrown when the method could not be invoked for some reason or the command failed with CmdException
+     */
+    void invoke(Object impl, CommandOutput output) throws CmdException {
+        Object[] arguments = null;
+        if (this._child == null) {
+            Object[] values = this._arguments;
+            for (int i = 0; i < values.length; i++) {
+                Object value = copyValue(values[i]);
+                if (value != values[i]) {
+                    if (values == this._arguments) {
+                        values = values.clone();
+                    }
+                    values[i] = value;
+                }
+            }
+            if (this._outputIndex >= 0) {
+                if (values == this._arguments) {
+                    values = values.clone();
+                }
+                values[this._outputIndex] = output;
+            }
+            arguments = OptionsHolder.toArguments(this._holders, values);
+        }
+        try {
+            for (int i = 0; i < this._globalFields.length; i++) {
+                this._globalFields[i].set(impl, copyValue(this._globalValues[i]));
+            }
+
+            if (this._child == null) {
+                this._method.invoke(impl, arguments);
+                return;
+            }
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof CmdException) {
+                // Error of a lazy parameter value (or reported by the command itself)
+                throw (CmdException)e.getCause();
+            }
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, "Unable to invoke command", e);
+        } catch (Exception e) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, "Unable to invoke command", e);
+        }
+
+        this._child.invoke(this.getHandler(impl), output);
+    }
+
+    /**
+     * Returns the handler object of the command group, null fields are initialized using the default constructor.
+     * @param impl Object owning the command group
+     * @return Handler object of the command group
+     * @throws CmdException Thrown when the handler object could not be obtained
+     */
+    private Object getHandler(Object impl) throws CmdException {
+        Object handler;
+        try {
+            if (this._groupAccessor instanceof Method) {
+                handler = ((Method)this._groupAccessor).invoke(impl);
+            }
+            else {
+                Field field = (Field)this._groupAccessor;
+                synchronized (impl) {
+                    handler = field.get(impl);
+                    if (handler == null) {
+                        handler = field.getType().getDeclaredConstructor().newInstance();
+                        field.set(impl, handler);
+                    }
+                }
+            }
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof CmdException) {
+                throw (CmdException)e.getCause();
+            }
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, "Unable to create command group handler", e.getCause());
+        } catch (Exception e) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, "Unable to create command group handler", e);
+        }
+
+        if (handler == null) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, this._commandName, "Command group handler is null");
+        }
+        return handler;
+    }
+
+    /**
+     * Returns a copy of a mutable value, so the copy can be changed without affecting the value stored in the command.
+     * Arrays, collections and maps are copied, buffers are duplicated (the content of the mapped files is read-only)
+     * and lazy values provide a copy of the computed value. Other values are immutable and are returned as they are.
+     * @param value Value of a parameter
+     * @return Copy of the value, the value itself if it's immutable
+     * @throws CmdException Thrown when the collection could not be copied
+     */
+    @SuppressWarnings("unchecked")
+    static Object copyValue(final Object value) throws CmdException {
+        if (value == null) {
+            return null;
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            System.arraycopy(value, 0, copy, 0, length);
+            return copy;
+        } else if (value instanceof IntList) {
+            return new IntList((IntList)value);
+        } else if (value instanceof LongList) {
+            return new LongList((LongList)value);
+        } else if (value instanceof IntSet) {
+            return new IntSet((IntSet)value);
+        } else if (value instanceof LongSet) {
+            return new LongSet((LongSet)value);
+        } else if (value instanceof Collection) {
+            Collection<Object> copy = (Collection<Object>)createCopy(value.getClass());
+            copy.addAll((Collection<Object>)value);
+            return copy;
+        } else if (value instanceof Map) {
+            Map<Object, Object> copy = (Map<Object, Object>)createCopy(value.getClass());
+            copy.putAll((Map<Object, Object>)value);
+            return copy;
+        } else if (value instanceof MappedByteBuffer) {
+            return ((MappedByteBuffer)value).duplicate();
+        } else if (value instanceof Future) {
+            return new BufferFuture((Future<MappedByteBuffer>)value);
+        } else if (value instanceof Lazy) {
+            return new Lazy<Object>(new Callable<Object>() {
+                @Override
+                public Object call() throws CmdException {
+                    return copyValue(((Lazy<Object>)value).get());
+                }
+            });
+        }
+        return value;
+    }
+
+    /**
+     * Creates an empty collection or map of the same type as the copied value.
+     * @param type Type of the copied value
+     * @return Empty collection or map
+     * @throws CmdException Thrown when the object could not be created
+     */
+    private static Object createCopy(Class<?> type) throws CmdException {
+        try {
+            return type.getDeclaredConstructor().newInstance();
+        } catch (Exception e) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, type.getSimpleName(), "Unable to copy parameter value", e);
+        }
+    }
+
+    /**
+     * Pending result of a prefetched file, which returns a duplicate of the loaded buffer, so the position
+     * of the shared buffer is not changed by the command.
+     */
+    private static final class BufferFuture implements Future<MappedByteBuffer> {
+        /**
+         * Pending result shared by all executions of the command.
+         */
+        private final Future<MappedByteBuffer> _future;
+
+        /**
+         * Constructor of the class.
+         * @param future Pending result shared by all executions of the command
+         */
+        BufferFuture(Future<MappedByteBuffer> future) {
+            this._future = future;
+        }
+
+        /**
+         * Attempts to cancel loading of the file.
+         * @param mayInterruptIfRunning True if the loading thread should be interrupted
+         * @return False if the loading could not be cancelled
+         */
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return this._future.cancel(mayInterruptIfRunning);
+        }
+
+        /**
+         * Returns whether loading of the file was cancelled.
+         * @return True if the loading was cancelled
+         */
+        @Override
+        public boolean isCancelled() {
+            return this._future.isCancelled();
+        }
+
+        /**
+         * Returns whether loading of the file completed.
+         * @return True if the loading completed
+         */
+        @Override
+        public boolean isDone() {
+            return this._future.isDone();
+        }
+
+        /**
+         * Waits for the loaded buffer.
+         * @return Duplicate of the loaded buffer
+         * @throws InterruptedException Thrown when the current thread was interrupted
+         * @throws ExecutionException Thrown when the file could not be loaded
+         */
+        @Override
+        public MappedByteBuffer get() throws InterruptedException, ExecutionException {
+            return (MappedByteBuffer)this._future.get().duplicate();
+        }
+
+        /**
+         * Waits for the loaded buffer at most the specified time.
+         * @param timeout Maximal time to wait
+         * @param unit Unit of the timeout
+         * @return Duplicate of the loaded buffer
+         * @throws InterruptedException Thrown when the current thread was interrupted
+         * @throws ExecutionException Thrown when the file could not be loaded
+         * @throws TimeoutException Thrown when the time elapsed
+         */
+        @Override
+        public MappedByteBuffer get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+            return (MappedByteBuffer)this._future.get(timeout, unit).duplicate();
+        }
+    }
+}
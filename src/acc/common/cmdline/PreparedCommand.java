@@ -0,0 +1,277 @@
+package acc.common.cmdline;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Holds a command template prepared by {@link CmdParser#prepare(String[])}.
+ * The command and all fixed values are resolved only once, the values of the placeholders (slots) are bound
+ * separately for each invocation, similarly to JDBC prepared statements. Slots are numbered from 0 in the order
+ * in which the parameters of the command are declared (options of an options holder take the place of the holder),
+ * followed by the global parameters. Slots of global parameters
+ * of an enclosing command group precede the slots of the group's commands.
+ * Objects of this class are not thread-safe, but each command created by {@link #toParsedCommand()} is immutable.
+ * Mutable values (arrays, collections and maps) are copied when a command is created, so bound commands don't share
+ * them with each other or with the template.
+ */
+public final class PreparedCommand {
+    /**
+     * Parsed template with the fixed values (slots are set to null).
+     */
+    private final ParsedCommand _template;
+
+    /**
+     * Slots of the template.
+     */
+    private final Slot[] _slots;
+
+    /**
+     * Values bound to the slots.
+     */
+    private final Object[] _values;
+
+    /**
+     * Flags indicating which slots are bound.
+     */
+    private final boolean[] _bound;
+
+    /**
+     * Constructor of the class.
+     * @param template Parsed template with the fixed values
+     * @param slots Slots of the template
+     */
+    PreparedCommand(ParsedCommand template, List<Slot> slots) {
+        this._template = template;
+        this._slots = slots.toArray(new Slot[slots.size()]);
+        this._values = new Object[this._slots.length];
+        this._bound = new boolean[this._slots.length];
+    }
+
+    /**
+     * Returns the number of slots in the template.
+     * @return Number of slots
+     */
+    public int getSlotCount() {
+        return this._slots.length;
+    }
+
+    /**
+     * Binds a value given as a string to the specified slot. The value is converted to the type of the parameter.
+     * @param slot Index of the slot
+     * @param value Value to bind
+     * @return This object
+     * @throws CmdException Thrown when the value could not be converted or is not correct
+     */
+    public PreparedCommand setString(int slot, final String value) throws CmdException {
+        final Slot info = this.getSlot(slot);
+        if (info.IsLazy) {
+            // Value is converted when it's used for the first time
+            this._values[slot] = new Lazy<Object>(new Callable<Object>() {
+                @Override
+                public Object call() throws CmdException {
+                    Object converted = CmdParser.getParameterValue(info.Type, info.ElementType, info.KeyType, info.Name, value);
+                    CmdParser.validateValue(converted, info.Type, info.Name, info.Validator);
+                    return converted;
+                }
+            });
+            this._bound[slot] = true;
+            return this;
+        }
+        return this.setValue(slot, CmdParser.getParameterValue(info.Type, info.ElementType, info.KeyType, info.Name, value));
+    }
+
+    /**
+     * Binds an int value to the specified slot, without converting it from a string.
+     * @param slot Index of the slot
+     * @param value Value to bind
+     * @return This object
+     * @throws CmdException Thrown when the slot has incompatible type or the value is not correct
+     */
+    public PreparedCommand setInt(int slot, int value) throws CmdException {
+        Class type = this.getSlot(slot).Type;
+        if (type.equals(long.class)) {
+            return this.setValue(slot, (long) value);
+        } else if (type.equals(double.class)) {
+            return this.setValue(slot, (double) value);
+        }
+        this.checkType(slot, int.class);
+        return this.setValue(slot, value);
+    }
+
+    /**
+     * Binds a long value to the specified slot, without converting it from a string.
+     * @param slot Index of the slot
+     * @param value Value to bind
+     * @return This object
+     * @throws CmdException Thrown when the slot has incompatible type or the value is not correct
+     */
+    public PreparedCommand setLong(int slot, long value) throws CmdException {
+        this.checkType(slot, long.class);
+        return this.setValue(slot, value);
+    }
+
+    /**
+     * Binds a double value to the specified slot, without converting it from a string.
+     * @param slot Index of the slot
+     * @param value Value to bind
+     * @return This object
+     * @throws CmdException Thrown when the slot has incompatible type or the value is not correct
+     */
+    public PreparedCommand setDouble(int slot, double value) throws CmdException {
+        this.checkType(slot, double.class);
+        return this.setValue(slot, value);
+    }
+
+    /**
+     * Binds a boolean value to the specified slot, without converting it from a string.
+     * @param slot Index of the slot
+     * @param value Value to bind
+     * @return This object
+     * @throws CmdException Thrown when the slot has incompatible type
+     */
+    public PreparedCommand setBoolean(int slot, boolean value) throws CmdException {
+        this.checkType(slot, boolean.class);
+        return this.setValue(slot, value);
+    }
+
+    /**
+     * Clears all bound values.
+     */
+    public void clearSlots() {
+        for (int i = 0; i < this._slots.length; i++) {
+            this._values[i] = null;
+            this._bound[i] = false;
+        }
+    }
+
+    /**
+     * Binds all slots from strings and creates an immutable command ready to execute.
+     * @param values Values of the slots
+     * @return Parsed command with all values bound
+     * @throws CmdException Thrown when the number of values doesn't match or a value is not correct
+     */
+    public ParsedCommand bind(String... values) throws CmdException {
+        if (values.length != this._slots.length) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, "slot=" + values.length, "Number of values doesn't match number of slots");
+        }
+        for (int i = 0; i < values.length; i++) {
+            this.setString(i, values[i]);
+        }
+        return this.toParsedCommand();
+    }
+
+    /**
+     * Creates an immutable command with the currently bound values.
+     * @return Parsed command with all values bound
+     * @throws CmdException Thrown when some of the slots are not bound
+     */
+    public ParsedCommand toParsedCommand() throws CmdException {
+        for (int i = 0; i < this._slots.length; i++) {
+            if (!this._bound[i]) {
+                throw new CmdException(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, this._slots[i].Name, "Slot is not bound");
+            }
+        }
+
+        return this.bindLevel(this._template, 0);
+    }
+
+    /**
+     * Executes the command with the currently bound values.
+     * @param impl Object on which the command should be invoked
+     * @throws CmdException Thrown when some of the slots are not bound or the method could not be invoked
+     */
+    public void execute(Object impl) throws CmdException {
+        this.toParsedCommand().execute(impl);
+    }
+
+    /**
+     * Creates a copy of the parsed template with the bound values for the specified level of command groups.
+     * @param template Parsed template of the level
+     * @param depth Depth of the level
+     * @return Parsed command with all values bound
+     * @throws CmdException Thrown when a value could not be copied
+     */
+    private ParsedCommand bindLevel(ParsedCommand template, int depth) throws CmdException {
+        Object[] arguments = template.getLevelArguments();
+        Object[] globalValues = template.getGlobalValues();
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = ParsedCommand.copyValue(arguments[i]);
+        }
+        for (int i = 0; i < globalValues.length; i++) {
+            globalValues[i] = ParsedCommand.copyValue(globalValues[i]);
+        }
+        for (int i = 0; i < this._slots.length; i++) {
+            if (this._slots[i].Depth != depth) {
+                continue;
+            }
+            if (this._slots[i].IsGlobal) {
+                globalValues[this._slots[i].Index] = ParsedCommand.copyValue(this._values[i]);
+            }
+            else {
+                arguments[this._slots[i].Index] = ParsedCommand.copyValue(this._values[i]);
+            }
+        }
+
+        ParsedCommand child = null;
+        if (template.getChild() != null) {
+            child = this.bindLevel(template.getChild(), depth + 1);
+        }
+        return template.withValues(arguments, globalValues, child);
+    }
+
+    /**
+     * Validates the value and binds it to the specified slot.
+     * @param slot Index of the slot
+     * @param value Value of the slot's type
+     * @return This object
+     * @throws CmdException Thrown when the value is not correct
+     */
+    private PreparedCommand setValue(int slot, Object value) throws CmdException {
+        Slot info = this.getSlot(slot);
+        CmdParser.validateValue(value, info.Type, info.Name, info.Validator);
+        this._values[slot] = info.IsLazy ? Lazy.of(value) : value;
+        this._bound[slot] = true;
+        return this;
+    }
+
+    /**
+     * Returns the slot with the specified index.
+     * @param slot Index of the slot
+     * @return Slot object
+     * @throws CmdException Thrown when the slot doesn't exist
+     */
+    private Slot getSlot(int slot) throws CmdException {
+        if (slot < 0 || slot >= this._slots.length) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_UNKNOWN_PARAMETER, "slot=" + slot, "Unknown slot");
+        }
+        return this._slots[slot];
+    }
+
+    /**
+     * Checks whether the specified slot has the expected type.
+     * @param slot Index of the slot
+     * @param type Expected type
+     * @throws CmdException Thrown when the slot has different type
+     */
+    private void checkType(int slot, Class type) throws CmdException {
+        Slot info = this.getSlot(slot);
+        if (!info.Type.equals(type)) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_UNSUPPORTED_PARAMETER_TYPE, info.Name, "Slot requires value of type " + info.Type.getSimpleName());
+        }
+    }
+
+    /**
+     * Helper class holding information about a slot.
+     */
+    static class Slot {
+        public boolean IsGlobal;
+        public int Depth;
+        public int Index;
+        public Class Type;
+        public Class ElementType;
+        public Class KeyType;
+        public String Name;
+        public IValidator Validator;
+        public boolean IsLazy;
+    }
+}
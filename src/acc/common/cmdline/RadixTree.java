@@ -0,0 +1,220 @@
+package acc.common.cmdline;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Compressed trie (radix tree) mapping names to targets. Besides exact lookups it resolves unique prefixes:
+ * each node knows whether all names below it map to the same target, so a lookup costs time proportional
+ * to the length of the searched name and not to the number of names.
+ * Objects of this class are not modified after they are built, so they can be searched concurrently.
+ * @param <T> Type of the targets
+ */
+final class RadixTree<T> {
+    /**
+     * Marker of a node with names mapping to different targets.
+     */
+    private static final Object Ambiguous = new Object();
+
+    /**
+     * Empty array of children shared by the leaf nodes.
+     */
+    private static final Node[] NoChildren = new Node[0];
+
+    /**
+     * Root node of the tree (with an empty label).
+     */
+    private final Node _root = new Node("");
+
+    /**
+     * Adds a name with its target to the tree. Several names (e.g. full and short name) can map to the same target.
+     * @param name Name to add, null and empty names are ignored
+     * @param target Target of the name
+     */
+    void put(String name, T target) {
+        if (name == null || name.length() == 0) {
+            return;
+        }
+
+        Node node = this._root;
+        int index = 0;
+        while (index < name.length()) {
+            Node child = node.getChild(name.charAt(index));
+            if (child == null) {
+                child = new Node(name.substring(index));
+                node.addChild(child);
+                child.addTarget(target);
+                child.Value = target;
+                return;
+            }
+
+            int common = 1;
+            while (common < child.Label.length() && index + common < name.length()
+                    && child.Label.charAt(common) == name.charAt(index + common)) {
+                common++;
+            }
+            if (common < child.Label.length()) {
+                // Split the edge, so the common part gets its own node
+                Node middle = new Node(child.Label.substring(0, common));
+                middle.Target = child.Target;
+                node.replaceChild(middle);
+                child.Label = child.Label.substring(common);
+                middle.addChild(child);
+                child = middle;
+            }
+            child.addTarget(target);
+            node = child;
+            index += common;
+        }
+        node.Value = target;
+    }
+
+    /**
+     * Finds the target of the name.
+     * @param name Name to search for
+     * @return Target of the name, null if the name is not in the tree
+     */
+    @SuppressWarnings("unchecked")
+    T get(String name) {
+        Node node = this._root;
+        int index = 0;
+        while (index < name.length()) {
+            node = node.getChild(name.charAt(index));
+            if (node == null || !name.regionMatches(index, node.Label, 0, node.Label.length())) {
+                return null;
+            }
+            index += node.Label.length();
+        }
+        return (T)node.Value;
+    }
+
+    /**
+     * Finds the target of the name or of the names starting with the specified prefix, if they all have the same target.
+     * @param prefix Name or prefix of names
+     * @return Target of the name or unique target of the prefix, null if there is no such name or the prefix is ambiguous
+     */
+    @SuppressWarnings("unchecked")
+    T getUnique(String prefix) {
+        Node node = this.findNode(prefix);
+        if (node == null || node.Target == Ambiguous) {
+            return null;
+        }
+        return (T)node.Target;
+    }
+
+    /**
+     * Returns all names starting with the specified prefix.
+     * @param prefix Prefix of names
+     * @return Sorted list of names
+     */
+    List<String> getNames(String prefix) {
+        Node node = this._root;
+        int index = 0;
+        StringBuilder path = new StringBuilder();
+        while (index < prefix.length()) {
+            node = node.getChild(prefix.charAt(index));
+            if (node == null) {
+                return Collections.emptyList();
+            }
+            int length = Math.min(node.Label.length(), prefix.length() - index);
+            if (!prefix.regionMatches(index, node.Label, 0, length)) {
+                return Collections.emptyList();
+            }
+            path.append(node.Label);
+            index += node.Label.length();
+        }
+
+        List<String> names = new ArrayList<String>();
+        collectNames(node, path, names);
+        Collections.sort(names);
+        return names;
+    }
+
+    /**
+     * Finds the node containing the end of the prefix.
+     * @param prefix Prefix of names
+     * @return Node, null if there is no name starting with the prefix
+     */
+    private Node findNode(String prefix) {
+        Node node = this._root;
+        int index = 0;
+        while (index < prefix.length()) {
+            node = node.getChild(prefix.charAt(index));
+            if (node == null) {
+                return null;
+            }
+            int length = Math.min(node.Label.length(), prefix.length() - index);
+            if (!prefix.regionMatches(index, node.Label, 0, length)) {
+                return null;
+            }
+            index += node.Label.length();
+        }
+        return node;
+    }
+
+    /**
+     * Adds names of the node and all its descendants to the list.
+     * @param node Node
+     * @param path Name of the node
+     * @param names List collecting the names
+     */
+    private static void collectNames(Node node, StringBuilder path, List<String> names) {
+        if (node.Value != null) {
+            names.add(path.toString());
+        }
+        for (Node child : node.Children) {
+            int length = path.length();
+            path.append(child.Label);
+            collectNames(child, path, names);
+            path.setLength(length);
+        }
+    }
+
+    /**
+     * Helper class holding a node of the tree.
+     */
+    private static class Node {
+        public String Label;
+        public Object Value;
+        public Object Target;
+        public Node[] Children = NoChildren;
+
+        public Node(String label) {
+            this.Label = label;
+        }
+
+        public Node getChild(char c) {
+            for (Node child : this.Children) {
+                if (child.Label.charAt(0) == c) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        public void addChild(Node child) {
+            this.Children = Arrays.copyOf(this.Children, this.Children.length + 1);
+            this.Children[this.Children.length - 1] = child;
+        }
+
+        public void replaceChild(Node child) {
+            for (int i = 0; i < this.Children.length; i++) {
+                if (this.Children[i].Label.charAt(0) == child.Label.charAt(0)) {
+                    this.Children[i] = child;
+                    return;
+                }
+            }
+        }
+
+        public void addTarget(Object target) {
+            if (this.Target == null) {
+                this.Target = target;
+            }
+            else if (this.Target != target) {
+                this.Target = Ambiguous;
+            }
+        }
+    }
+}
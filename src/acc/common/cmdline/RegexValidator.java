@@ -1,5 +1,7 @@
 package acc.common.cmdline;
 
+import java.util.regex.Pattern;
+
 /**
  * Implements a regex validator.
  */
@@ -9,12 +11,27 @@ public class RegexValidator implements IValidator {
      */
     private String _regex;
 
+    /**
+     * Compiled regex expression (compiled once, Pattern objects are thread-safe).
+     */
+    private Pattern _pattern;
+
     /**
      * Constructor of the class.
      * @param regex Regex expression to validate against
+     * @throws java.util.regex.PatternSyntaxException Thrown when the regex expression is not valid
      */
     public RegexValidator(String regex) {
         this._regex = regex;
+        this._pattern = Pattern.compile(regex);
+    }
+
+    /**
+     * Returns the regex expression used for validation.
+     * @return Regex expression
+     */
+    public String getRegex() {
+        return this._regex;
     }
 
     /**
@@ -28,11 +45,30 @@ public class RegexValidator implements IValidator {
         if (testedValue == null) {
             return "The value cannot be null";
         }
-        if (!testedValue.matches(this._regex)) {
+        if (!this._pattern.matcher(testedValue).matches()) {
             return "The value doesn't match the required regex expression: " + this._regex;
         }
 
         // Success, error message is null
         return null;
     }
+
+    /**
+     * Checks whether the other object is a validator with the same settings.
+     * @param other Object to compare with
+     * @return True if the validators are equal
+     */
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof RegexValidator && this._regex.equals(((RegexValidator)other)._regex);
+    }
+
+    /**
+     * Returns a hash code of the validator settings.
+     * @return Hash code
+     */
+    @Override
+    public int hashCode() {
+        return this._regex.hashCode();
+    }
 }
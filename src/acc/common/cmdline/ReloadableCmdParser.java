@@ -0,0 +1,175 @@
+package acc.common.cmdline;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds a parser, which can be replaced by a parser of a new version of the class defining the command line
+ * without restarting the process. The new parser is created completely before it's switched atomically,
+ * dispatches already running finish on the old parser. When the class was loaded by {@link #reload(URL[], String)},
+ * the old class loader can be collected once no dispatch uses the old parser anymore.
+ */
+public final class ReloadableCmdParser {
+    /**
+     * Current parser.
+     */
+    private final AtomicReference<CmdParser> _parser;
+
+    /**
+     * Cache file with the definition of command line, null if not used.
+     */
+    private final File _schemaCache;
+
+    /**
+     * Constructor of the class.
+     * @param impl Object to which the command line arguments will be dispatched to
+     * @throws CmdException Thrown when the definition of command line is invalid
+     */
+    public ReloadableCmdParser(Object impl) throws CmdException {
+        this(impl, null);
+    }
+
+    /**
+     * Constructor of the class, which stores the definition of command line in a cache file.
+     * @param impl Object to which the command line arguments will be dispatched to
+     * @param schemaCache Cache file with the definition of command line, null if not used
+     * @throws CmdException Thrown when the definition of command line is invalid
+     */
+    public ReloadableCmdParser(Object impl, File schemaCache) throws CmdException {
+        this._schemaCache = schemaCache;
+        this._parser = new AtomicReference<CmdParser>(new CmdParser(impl, schemaCache));
+    }
+
+    /**
+     * Returns the current parser. Callers should not keep the parser, so it can be collected after a reload.
+     * @return Current parser
+     */
+    public CmdParser getParser() {
+        return this._parser.get();
+    }
+
+    /**
+     * Dispatches the command line arguments using the current parser.
+     * @param args Command line arguments
+     * @throws CmdException Thrown when the command line arguments are invalid or the command failed
+     */
+    public void dispatch(String[] args) throws CmdException {
+        this._parser.get().dispatch(args);
+    }
+
+    /**
+     * Dispatches the command line arguments using the current parser without throwing exceptions for invalid user input.
+     * @param args Command line arguments
+     * @return Result of the dispatch
+     */
+    public DispatchResult tryDispatch(String[] args) {
+        return this._parser.get().tryDispatch(args);
+    }
+
+    /**
+     * Replaces the parser by a parser of the specified object. Settings of the current parser are kept.
+     * @param impl Object to which the command line arguments will be dispatched to
+     * @throws CmdException Thrown when the definition of command line is invalid (the current parser is kept)
+     */
+    public void reload(Object impl) throws CmdException {
+        CmdParser parser = new CmdParser(impl, this._schemaCache);
+        parser.setAllowAbbreviations(this._parser.get().isAllowAbbreviations());
+        this._parser.set(parser);
+    }
+
+    /**
+     * Loads a new version of the class defining the command line through an isolated class loader and replaces
+     * the parser by a parser of a new instance of the class. Classes of the library are shared with the current
+     * class loader, all other classes are loaded from the specified locations first.
+     * @param classPath Locations of the classes (directories or JAR files)
+     * @param className Name of the class defining the command line (it must have a public default constructor)
+     * @return New instance of the class
+     * @throws CmdException Thrown when the class could not be loaded or the definition of command line is invalid
+     */
+    public Object reload(URL[] classPath, String className) throws CmdException {
+        Object impl;
+        try {
+            ClassLoader classLoader = new IsolatedClassLoader(classPath, CmdParser.class.getClassLoader());
+            impl = classLoader.loadClass(className).getDeclaredConstructor().newInstance();
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof CmdException) {
+                throw (CmdException)e.getCause();
+            }
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, className, "Unable to load command line class", e.getCause());
+        } catch (Exception e) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, className, "Unable to load command line class", e);
+        }
+        this.reload(impl);
+        return impl;
+    }
+
+    /**
+     * Class loader loading classes from its own locations before asking the parent class loader,
+     * except for the classes of the Java platform and of the library.
+     */
+    private static class IsolatedClassLoader extends URLClassLoader {
+        /**
+         * Packages of the library shared with the parent class loader.
+         */
+        private static final String[] SharedPackages = new String[] {
+                "acc.common.cmdline", "acc.common.cmdline.annotation", "acc.common.cmdline.collections" };
+
+        /**
+         * Constructor of the class.
+         * @param urls Locations of the classes
+         * @param parent Parent class loader
+         */
+        public IsolatedClassLoader(URL[] urls, ClassLoader parent) {
+            super(urls, parent);
+        }
+
+        /**
+         * Loads the class from the locations of this class loader first, unless the class is shared.
+         * @param name Name of the class
+         * @param resolve True if the class should be resolved
+         * @return Loaded class
+         * @throws ClassNotFoundException Thrown when the class was not found
+         */
+        @Override
+        protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            if (isShared(name)) {
+                return super.loadClass(name, resolve);
+            }
+
+            Class<?> type = this.findLoadedClass(name);
+            if (type == null) {
+                try {
+                    type = this.findClass(name);
+                } catch (ClassNotFoundException e) {
+                    return super.loadClass(name, resolve);
+                }
+            }
+            if (resolve) {
+                this.resolveClass(type);
+            }
+            return type;
+        }
+
+        /**
+         * Checks whether the class is shared with the parent class loader.
+         * @param name Name of the class
+         * @return True if the class belongs to the Java platform or to the library
+         */
+        private static boolean isShared(String name) {
+            if (name.startsWith("java.") || name.startsWith("javax.") || name.startsWith("sun.")) {
+                return true;
+            }
+            int index = name.lastIndexOf('.');
+            String packageName = index > 0 ? name.substring(0, index) : "";
+            for (String sharedPackage : SharedPackages) {
+                if (sharedPackage.equals(packageName)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package acc.common.cmdline;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.Arrays;
+
+/**
+ * Helper methods for storing the compiled command line definition in a binary cache file.
+ * The file is keyed by a hash of the bytes of the class defining the command line and of the other classes
+ * whose annotations are part of the definition (options holders and command group handlers), including their
+ * superclasses, so a file created for a different version of any of the classes is detected as stale.
+ * The names of the other classes are stored in the header, so they are known before the definition is read.
+ */
+final class SchemaCache {
+    /**
+     * Magic number identifying the cache file ("CMDS").
+     */
+    private static final int Magic = 0x434d4453;
+
+    /**
+     * Version of the file format.
+     */
+    private static final int Version = 8;
+
+    /**
+     * Primitive types, which cannot be loaded by name.
+     */
+    private static final Class[] PrimitiveTypes = new Class[] {
+            boolean.class, byte.class, short.class, char.class, int.class, long.class, float.class, double.class, void.class };
+
+    /**
+     * Constructor of the class (no instances are allowed).
+     */
+    private SchemaCache() {
+    }
+
+    /**
+     * Computes a hash of the bytes of the classes and their superclasses.
+     * @param type Class defining the command line
+     * @param dependencies Other classes whose annotations are part of the definition
+     * @return Hash of the class bytes, null if the bytes of some class are not available
+     */
+    static byte[] computeHash(Class type, Class[] dependencies) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] buffer = new byte[8192];
+            for (int i = -1; i < dependencies.length; i++) {
+                Class dependency = i < 0 ? type : dependencies[i];
+                for (Class current = dependency; current != null && current != Object.class; current = current.getSuperclass()) {
+                    String name = current.getName();
+                    InputStream input = current.getResourceAsStream(name.substring(name.lastIndexOf('.') + 1) + ".class");
+                    if (input == null) {
+                        return null;
+                    }
+                    try {
+                        digest.update(name.getBytes("UTF-8"));
+                        int length;
+                        while ((length = input.read(buffer)) > 0) {
+                            digest.update(buffer, 0, length);
+                        }
+                    } finally {
+                        input.close();
+                    }
+                }
+            }
+            return digest.digest();
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the header of the cache file.
+     * @param output Output stream
+     * @param type Class defining the command line
+     * @param dependencies Other classes whose annotations are part of the definition
+     * @param hash Hash of the class bytes (see {@link #computeHash(Class, Class[])})
+     * @throws IOException Thrown when writing failed
+     */
+    static void writeHeader(DataOutputStream output, Class type, Class[] dependencies, byte[] hash) throws IOException {
+        output.writeInt(Magic);
+        output.writeInt(Version);
+        output.writeUTF(type.getName());
+        output.writeInt(dependencies.length);
+        for (Class dependency : dependencies) {
+            output.writeUTF(dependency.getName());
+        }
+        output.writeShort(hash.length);
+        output.write(hash);
+    }
+
+    /**
+     * Reads the header of the cache file and checks whether the file matches the current bytes of the class
+     * and of the other classes listed in the header.
+     * @param input Input stream
+     * @param type Class defining the command line
+     * @return True if the file matches the classes, false if the file is stale
+     * @throws IOException Thrown when reading failed or a listed class could not be loaded
+     */
+    static boolean readHeader(DataInputStream input, Class type) throws IOException {
+        if (input.readInt() != Magic || input.readInt() != Version || !input.readUTF().equals(type.getName())) {
+            return false;
+        }
+        Class[] dependencies = new Class[input.readInt()];
+        for (int i = 0; i < dependencies.length; i++) {
+            String name = input.readUTF();
+            try {
+                dependencies[i] = Class.forName(name, false, type.getClassLoader());
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unable to load class " + name);
+            }
+        }
+        byte[] storedHash = new byte[input.readUnsignedShort()];
+        input.readFully(storedHash);
+        byte[] hash = computeHash(type, dependencies);
+        return hash != null && Arrays.equals(hash, storedHash);
+    }
+
+    /**
+     * Writes a string, which may be null.
+     * @param output Output stream
+     * @param value String value, may be null
+     * @throws IOException Thrown when writing failed
+     */
+    static void writeString(DataOutputStream output, String value) throws IOException {
+        output.writeBoolean(value != null);
+        if (value != null) {
+            output.writeUTF(value);
+        }
+    }
+
+    /**
+     * Reads a string, which may be null.
+     * @param input Input stream
+     * @return String value, may be null
+     * @throws IOException Thrown when reading failed
+     */
+    static String readString(DataInputStream input) throws IOException {
+        if (!input.readBoolean()) {
+            return null;
+        }
+        return input.readUTF();
+    }
+
+    /**
+     * Writes a name of a class, which may be null.
+     * @param output Output stream
+     * @param value Class, may be null
+     * @throws IOException Thrown when writing failed
+     */
+    static void writeClass(DataOutputStream output, Class value) throws IOException {
+        writeString(output, value != null ? value.getName() : null);
+    }
+
+    /**
+     * Reads a name of a class and loads the class (without initializing it).
+     * @param input Input stream
+     * @param classLoader Class loader used to load the class
+     * @return Class, may be null
+     * @throws IOException Thrown when reading failed or the class could not be loaded
+     */
+    static Class readClass(DataInputStream input, ClassLoader classLoader) throws IOException {
+        String name = readString(input);
+        if (name == null) {
+            return null;
+        }
+        for (Class primitiveType : PrimitiveTypes) {
+            if (primitiveType.getName().equals(name)) {
+                return primitiveType;
+            }
+        }
+        try {
+            return Class.forName(name, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            throw new IOException("Unable to load class " + name);
+        }
+    }
+}
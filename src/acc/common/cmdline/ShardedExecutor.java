@@ -0,0 +1,604 @@
+package acc.common.cmdline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Dispatches batches of command lines on several worker processes, each of them holding a warm parser
+ * (see {@link ShardedWorker}). Command lines are sent over pipes using a compact binary framing. Workers pull
+ * the next command line when they finish the previous one, so slow commands don't hold back the other workers.
+ * Results are reported in the order of the command lines. A crashed worker fails only the command line it was
+ * dispatching and is replaced by a new process. Output written by the commands to {@link CommandOutput}
+ * is returned with the results.
+ */
+public final class ShardedExecutor implements Closeable {
+    /**
+     * Number of command lines waiting for a worker per worker, limits the memory used by streamed batches.
+     */
+    private static final int QueueDepth = 4;
+
+    /**
+     * Command used to start the worker processes.
+     */
+    private final List<String> _command;
+
+    /**
+     * Command lines waiting for a worker.
+     */
+    private final BlockingQueue<Task> _queue;
+
+    /**
+     * Threads communicating with the worker processes.
+     */
+    private final List<WorkerThread> _workers;
+
+    /**
+     * Number of workers with a running process.
+     */
+    private final AtomicInteger _liveWorkerCount = new AtomicInteger();
+
+    /**
+     * Lock ordering the submission of command lines with the shutdown, so no command line is queued after
+     * the workers were asked to stop.
+     */
+    private final Object _submitLock = new Object();
+
+    /**
+     * True when the executor was shut down, new command lines are rejected.
+     */
+    private boolean _closed;
+
+    /**
+     * Constructor of the class, the worker processes are started immediately.
+     * @param type Class defining the command line (it must have a public default constructor)
+     * @param workerCount Number of worker processes
+     * @throws CmdException Thrown when a worker process could not be started
+     */
+    public ShardedExecutor(Class type, int workerCount) throws CmdException {
+        this(type, workerCount, null, new ArrayList<String>());
+    }
+
+    /**
+     * Constructor of the class, the worker processes are started immediately.
+     * @param type Class defining the command line (it must have a public default constructor)
+     * @param workerCount Number of worker processes
+     * @param schemaCache Cache file with the definition of command line shared by the workers, null if not used
+     * @param jvmOptions Additional options of the worker JVMs (e.g. heap size)
+     * @throws CmdException Thrown when a worker process could not be started
+     */
+    public ShardedExecutor(Class type, int workerCount, File schemaCache, List<String> jvmOptions) throws CmdException {
+        this._command = new ArrayList<String>();
+        this._command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        this._command.addAll(jvmOptions);
+        this._command.add("-cp");
+        this._command.add(System.getProperty("java.class.path"));
+        this._command.add(ShardedWorker.class.getName());
+        this._command.add(type.getName());
+        if (schemaCache != null) {
+            this._command.add(schemaCache.getPath());
+        }
+
+        this._queue = new LinkedBlockingQueue<Task>(Math.max(1, workerCount) * QueueDepth);
+        this._workers = new ArrayList<WorkerThread>();
+        List<Process> processes = new ArrayList<Process>();
+        try {
+            // Processes are started first, so they initialize in parallel
+            for (int i = 0; i < workerCount; i++) {
+                processes.add(this.startProcess());
+            }
+            for (int i = 0; i < workerCount; i++) {
+                WorkerThread worker = new WorkerThread(i, this.connect(processes.get(i)));
+                this._workers.add(worker);
+            }
+        } catch (CmdException e) {
+            // Worker threads are not started yet, so the processes are stopped here
+            for (Process process : processes) {
+                process.destroy();
+            }
+            throw e;
+        }
+        this._liveWorkerCount.set(this._workers.size());
+        for (WorkerThread worker : this._workers) {
+            worker.start();
+        }
+    }
+
+    /**
+     * Dispatches the command lines and waits for all results.
+     * @param commandLines Command lines (arguments of each command line, commands of a pipeline are separated by ";;")
+     * @return Results in the order of the command lines (with the captured output of the commands)
+     */
+    public DispatchResult[] dispatchAll(List<String[]> commandLines) {
+        DispatchResult[] results = new DispatchResult[commandLines.size()];
+        List<Task> tasks = new ArrayList<Task>(commandLines.size());
+        for (int i = 0; i < results.length; i++) {
+            Task task = new Task(i, CmdParser.splitPipeline(commandLines.get(i)));
+            tasks.add(task);
+            this.submit(task);
+        }
+        for (int i = 0; i < results.length; i++) {
+            results[i] = tasks.get(i).await();
+        }
+        return results;
+    }
+
+    /**
+     * Reads command lines from the reader and dispatches them on the workers. Lines are processed as in
+     * {@link CmdParser#dispatchStream(Reader, IBatchListener)}, the listener is called in the order of the lines
+     * and the output of the commands is written to System.out in the same order.
+     * Only a limited number of lines is read ahead, so the memory needed doesn't depend on the number of lines.
+     * @param reader Reader with command lines
+     * @param listener Listener receiving the outcome of each command line
+     * @return Number of command lines which failed
+     * @throws IOException Thrown when the reader could not be read
+     */
+    public long dispatchStream(Reader reader, IBatchListener listener) throws IOException {
+        BufferedReader bufferedReader = reader instanceof BufferedReader ? (BufferedReader)reader : new BufferedReader(reader);
+        LinkedList<Task> pending = new LinkedList<Task>();
+        int window = Math.max(1, this._workers.size()) * QueueDepth * 2;
+        long lineNumber = 0;
+        long failedCount = 0;
+        String line;
+        while ((line = bufferedReader.readLine()) != null) {
+            lineNumber++;
+            String trimmedLine = line.trim();
+            if (trimmedLine.length() == 0 || trimmedLine.charAt(0) == '#') {
+                continue;
+            }
+
+            Task task;
+            try {
+                task = new Task(lineNumber, CmdTokenizer.tokenizePipeline(line));
+                this.submit(task);
+            } catch (CmdException e) {
+                task = new Task(lineNumber, null);
+                task.complete(DispatchResult.failure(e));
+            }
+            task.Line = line;
+            pending.add(task);
+
+            // Report finished lines in order, wait when too many lines are pending
+            while (!pending.isEmpty() && (pending.getFirst().isDone() || pending.size() > window)) {
+                failedCount += report(pending.removeFirst(), listener);
+            }
+        }
+        while (!pending.isEmpty()) {
+            failedCount += report(pending.removeFirst(), listener);
+        }
+        return failedCount;
+    }
+
+    /**
+     * Stops the worker processes and waits until they exit. Command lines queued before are still dispatched,
+     * command lines dispatched later fail with {@link CmdExceptionCode#DISPATCH_REJECTED}.
+     * Calling the method again only waits for the workers.
+     * @return Exit code of the workers (0 if all workers exited successfully, otherwise the first non-zero exit code)
+     */
+    public int shutdown() {
+        boolean interrupted = false;
+        synchronized (this._submitLock) {
+            if (!this._closed) {
+                this._closed = true;
+                for (int i = 0; i < this._workers.size(); i++) {
+                    // The queue may be full, the workers make room for the shutdown tasks
+                    while (true) {
+                        try {
+                            this._queue.put(Task.Shutdown);
+                            break;
+                        } catch (InterruptedException e) {
+                            interrupted = true;
+                        }
+                    }
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        int exitCode = 0;
+        for (WorkerThread worker : this._workers) {
+            int workerExitCode = worker.awaitExit();
+            if (exitCode == 0) {
+                exitCode = workerExitCode;
+            }
+        }
+        return exitCode;
+    }
+
+    /**
+     * Stops the worker processes.
+     */
+    @Override
+    public void close() {
+        this.shutdown();
+    }
+
+    /**
+     * Writes the output of a command line and reports its outcome to the listener.
+     * @param task Task of the command line
+     * @param listener Listener receiving the outcome
+     * @return 1 if the command line failed, 0 otherwise
+     */
+    private static int report(Task task, IBatchListener listener) {
+        DispatchResult result = task.await();
+        if (result.getOutput() != null) {
+            System.out.print(result.getOutput());
+            System.out.flush();
+        }
+        CmdException error = null;
+        if (!result.isSuccess()) {
+            error = new CmdException(result.getErrorCode(), result.getInvalidArgument(), result.getMessage(), result.getSuggestions());
+        }
+        listener.lineCompleted(task.Sequence, task.Line, error);
+        return error != null ? 1 : 0;
+    }
+
+    /**
+     * Adds a task to the queue, waits when the queue is full. The task fails when the executor was shut down
+     * or no worker is running.
+     * @param task Task to add
+     */
+    private void submit(Task task) {
+        synchronized (this._submitLock) {
+            if (this._closed) {
+                task.complete(DispatchResult.failure(CmdExceptionCode.DISPATCH_REJECTED, null, "Executor is shut down", null));
+                return;
+            }
+            if (this._liveWorkerCount.get() == 0) {
+                task.complete(DispatchResult.failure(CmdExceptionCode.DISPATCH_REJECTED, null, "No worker process is running", null));
+                return;
+            }
+            try {
+                this._queue.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                task.complete(DispatchResult.failure(CmdExceptionCode.DISPATCH_CANCELLED, null, "Interrupted while waiting for a worker", null));
+                return;
+            }
+        }
+
+        // The last worker may have exited after the check above and drained the queue before the task was added
+        if (this._liveWorkerCount.get() == 0) {
+            this.failQueuedTasks();
+        }
+    }
+
+    /**
+     * Fails all tasks waiting in the queue, called when there is no worker left.
+     */
+    private void failQueuedTasks() {
+        Task task;
+        while ((task = this._queue.poll()) != null) {
+            if (task != Task.Shutdown) {
+                task.complete(DispatchResult.failure(CmdExceptionCode.DISPATCH_REJECTED, null, "No worker process is running", null));
+            }
+        }
+    }
+
+    /**
+     * Starts a worker process. Its standard error is copied to the standard error of this process.
+     * @return Worker process
+     * @throws CmdException Thrown when the process could not be started
+     */
+    private Process startProcess() throws CmdException {
+        try {
+            Process process = new ProcessBuilder(this._command).start();
+            Thread errorCopier = new StreamCopier(process.getErrorStream(), System.err);
+            errorCopier.start();
+            return process;
+        } catch (IOException e) {
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, "Unable to start worker process", e);
+        }
+    }
+
+    /**
+     * Waits until the worker process is ready to dispatch commands, the process is destroyed when it failed to start.
+     * @param process Worker process
+     * @return Connection to the worker process
+     * @throws CmdException Thrown when the worker process failed to start
+     */
+    private Connection connect(Process process) throws CmdException {
+        Connection connection = new Connection(process);
+        try {
+            int status = connection.Input.readInt();
+            if (status != WorkerProtocol.Ready) {
+                String message = status == WorkerProtocol.Shutdown ? WorkerProtocol.readString(connection.Input) : "Invalid response";
+                process.destroy();
+                throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, message, "Worker process failed to start");
+            }
+        } catch (IOException e) {
+            process.destroy();
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, "Worker process failed to start", e);
+        }
+        return connection;
+    }
+
+    /**
+     * Helper class holding a command line dispatched by a worker.
+     */
+    private static class Task {
+        /**
+         * Task asking a worker to stop.
+         */
+        public static final Task Shutdown = new Task(-1, null);
+
+        /**
+         * Position of the command line in the batch (line number for streams).
+         */
+        public final long Sequence;
+
+        /**
+         * Arguments of the commands of the pipeline, null if the command line could not be tokenized.
+         */
+        public final List<String[]> Commands;
+
+        /**
+         * Text of the command line for streams, null otherwise.
+         */
+        public String Line;
+
+        /**
+         * Latch released when the result is available.
+         */
+        private final CountDownLatch _done = new CountDownLatch(1);
+
+        /**
+         * Result of the dispatch, null until the task is completed.
+         */
+        private volatile DispatchResult _result;
+
+        /**
+         * Constructor of the class.
+         * @param sequence Position of the command line in the batch
+         * @param commands Arguments of the commands of the pipeline
+         */
+        public Task(long sequence, List<String[]> commands) {
+            this.Sequence = sequence;
+            this.Commands = commands;
+        }
+
+        /**
+         * Sets the result of the dispatch and releases the waiting threads.
+         * @param result Result of the dispatch
+         */
+        public void complete(DispatchResult result) {
+            this._result = result;
+            this._done.countDown();
+        }
+
+        /**
+         * Returns whether the result is available.
+         * @return True if the task is completed
+         */
+        public boolean isDone() {
+            return this._done.getCount() == 0;
+        }
+
+        /**
+         * Waits until the result is available, the interrupted status of the thread is kept.
+         * @return Result of the dispatch
+         */
+        public DispatchResult await() {
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    this._done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            return this._result;
+        }
+    }
+
+    /**
+     * Helper class holding the pipes of a worker process.
+     */
+    private static class Connection {
+        /**
+         * Worker process.
+         */
+        public final Process Process;
+
+        /**
+         * Stream reading the responses of the worker.
+         */
+        public final DataInputStream Input;
+
+        /**
+         * Stream writing the requests to the worker.
+         */
+        public final DataOutputStream Output;
+
+        /**
+         * Number of the next request sent to the worker.
+         */
+        public int NextSequence;
+
+        /**
+         * Constructor of the class.
+         * @param process Worker process
+         */
+        public Connection(Process process) {
+            this.Process = process;
+            this.Input = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+            this.Output = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+        }
+    }
+
+    /**
+     * Thread sending command lines from the queue to a worker process, the process is restarted when it crashes.
+     */
+    private class WorkerThread extends Thread {
+        /**
+         * Connection to the worker process, null when the process could not be restarted.
+         */
+        private Connection _connection;
+
+        /**
+         * Exit code of the worker process, set when the thread ends.
+         */
+        private int _exitCode;
+
+        /**
+         * Constructor of the class.
+         * @param index Index of the worker (used in the name of the thread)
+         * @param connection Connection to the started worker process
+         */
+        public WorkerThread(int index, Connection connection) {
+            super("ShardedExecutor-worker-" + index);
+            this.setDaemon(true);
+            this._connection = connection;
+        }
+
+        /**
+         * Sends the queued command lines to the worker process until a shutdown task is taken
+         * or the process could not be restarted, then stops the process.
+         */
+        @Override
+        public void run() {
+            while (true) {
+                Task task;
+                try {
+                    task = _queue.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (task == Task.Shutdown) {
+                    break;
+                }
+
+                try {
+                    // Requests are numbered per process, a response with a different number means the pipe is out of sync
+                    int sequence = this._connection.NextSequence;
+                    this._connection.NextSequence = (sequence + 1) & Integer.MAX_VALUE;
+                    WorkerProtocol.writeRequest(this._connection.Output, sequence, task.Commands);
+                    task.complete(WorkerProtocol.readResponse(this._connection.Input, sequence));
+                } catch (IOException e) {
+                    task.complete(DispatchResult.failure(CmdExceptionCode.DISPATCH_INVOKE_ERROR, null, "Worker process terminated", null));
+                    if (!this.restart()) {
+                        break;
+                    }
+                }
+            }
+            this.stopProcess();
+        }
+
+        /**
+         * Waits until the thread ends.
+         * @return Exit code of the worker process
+         */
+        public int awaitExit() {
+            try {
+                this.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return this._exitCode;
+        }
+
+        /**
+         * Replaces the crashed worker process by a new process.
+         * @return True if the process was restarted, false if the worker is stopped
+         */
+        private boolean restart() {
+            this._connection.Process.destroy();
+            try {
+                this._connection = connect(startProcess());
+                return true;
+            } catch (CmdException e) {
+                System.err.println("Unable to restart worker process: " + e.getMessage());
+                this._connection = null;
+                // Remaining tasks are taken over by the other workers, or fail when there is no worker left
+                if (_liveWorkerCount.decrementAndGet() == 0) {
+                    failQueuedTasks();
+                }
+                return false;
+            }
+        }
+
+        /**
+         * Asks the worker process to exit and waits for its exit code, the process is destroyed when it doesn't respond.
+         */
+        private void stopProcess() {
+            if (this._connection == null) {
+                this._exitCode = 1;
+                return;
+            }
+            try {
+                this._connection.Output.writeInt(WorkerProtocol.Shutdown);
+                this._connection.Output.flush();
+                this._exitCode = this._connection.Process.waitFor();
+            } catch (Exception e) {
+                this._connection.Process.destroy();
+                this._exitCode = 1;
+            }
+        }
+    }
+
+    /**
+     * Thread copying the output of a worker process.
+     */
+    private static class StreamCopier extends Thread {
+        /**
+         * Stream being copied.
+         */
+        private final InputStream _input;
+
+        /**
+         * Stream receiving the copy (writes are synchronized on it).
+         */
+        private final OutputStream _output;
+
+        /**
+         * Constructor of the class.
+         * @param input Stream being copied
+         * @param output Stream receiving the copy
+         */
+        public StreamCopier(InputStream input, OutputStream output) {
+            super("ShardedExecutor-output");
+            this.setDaemon(true);
+            this._input = input;
+            this._output = output;
+        }
+
+        /**
+         * Copies the stream until its end.
+         */
+        @Override
+        public void run() {
+            byte[] buffer = new byte[8192];
+            try {
+                int length;
+                while ((length = this._input.read(buffer)) > 0) {
+                    synchronized (this._output) {
+                        this._output.write(buffer, 0, length);
+                        this._output.flush();
+                    }
+                }
+            } catch (IOException e) {
+                // Process exited
+            }
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package acc.common.cmdline;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.reflect.InvocationTargetException;
+import java.util.List;
+
+/**
+ * Entry point of a worker process started by {@link ShardedExecutor}. The worker keeps a warm parser
+ * and dispatches command lines received on the standard input, results are written to the standard output.
+ * Command lines are received already split into the commands of a pipeline and dispatched as pipelines
+ * (see {@link CmdParser#dispatchPipeline(String[], DispatchOptions)}), as in {@link CmdParser#dispatchStream(java.io.Reader, IBatchListener)}.
+ * Output written to {@link CommandOutput} is returned with the results, output written directly to System.out
+ * is redirected to the standard error, so it doesn't mix with the results.
+ * Usage: ShardedWorker className [schemaCache]
+ */
+public final class ShardedWorker {
+    /**
+     * Constructor of the class (no instances are allowed).
+     */
+    private ShardedWorker() {
+    }
+
+    /**
+     * Creates the parser and dispatches the received command lines until the coordinator asks to stop.
+     * @param args Name of the class defining the command line and optional cache file with its definition
+     * @throws IOException Thrown when the pipes to the coordinator failed
+     */
+    public static void main(String[] args) throws IOException {
+        DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(FileDescriptor.in)));
+        DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(FileDescriptor.out)));
+        System.setOut(System.err);
+
+        CmdParser parser;
+        try {
+            Object impl = Class.forName(args[0]).getDeclaredConstructor().newInstance();
+            parser = new CmdParser(impl, args.length > 1 ? new File(args[1]) : null);
+        } catch (InvocationTargetException e) {
+            exitWithError(output, e.getCause());
+            return;
+        } catch (Exception e) {
+            exitWithError(output, e);
+            return;
+        }
+        output.writeInt(WorkerProtocol.Ready);
+        output.flush();
+
+        ByteArrayOutputStream capturedOutput = new ByteArrayOutputStream();
+        DispatchOptions options = new DispatchOptions().setOutput(new PrintStream(capturedOutput, false, "UTF-8"));
+
+        while (true) {
+            int sequence;
+            try {
+                sequence = input.readInt();
+            } catch (EOFException e) {
+                // Coordinator is gone
+                break;
+            }
+            if (sequence == WorkerProtocol.Shutdown) {
+                break;
+            }
+            List<String[]> commands = WorkerProtocol.readCommands(input);
+            CmdException error = null;
+            try {
+                parser.dispatchPipeline(commands, options);
+            } catch (CmdException e) {
+                error = e;
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                error = new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, null, e.toString());
+            }
+            options.getOutput().flush();
+            String text = capturedOutput.size() > 0 ? capturedOutput.toString("UTF-8") : null;
+            capturedOutput.reset();
+            DispatchResult result = error == null ? DispatchResult.success(text) : DispatchResult.failure(error, text);
+            WorkerProtocol.writeResponse(output, sequence, result);
+        }
+        System.err.flush();
+        System.exit(0);
+    }
+
+    /**
+     * Reports the failure to create the parser to the coordinator and exits.
+     * @param output Stream writing to the coordinator
+     * @param error Cause of the failure
+     * @throws IOException Thrown when the failure could not be reported
+     */
+    private static void exitWithError(DataOutputStream output, Throwable error) throws IOException {
+        error.printStackTrace();
+        output.writeInt(WorkerProtocol.Shutdown);
+        WorkerProtocol.writeString(output, error.toString());
+        output.flush();
+        System.exit(1);
+    }
+}
@@ -0,0 +1,186 @@
+package acc.common.cmdline;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper methods for the binary framing used between {@link ShardedExecutor} and {@link ShardedWorker}.
+ * A request consists of a sequence number and the commands of a pipeline (the number of commands, and for each command
+ * the number of arguments and the arguments as length-prefixed UTF-8).
+ * Sequence numbers count the requests sent to a worker process (they are never negative).
+ * A response consists of the sequence number of the request and a status byte, failed responses contain also
+ * the error code, the invalid argument and the message. The sequence number -1 asks the worker to exit.
+ */
+final class WorkerProtocol {
+    /**
+     * Sequence number asking the worker to exit.
+     */
+    static final int Shutdown = -1;
+
+    /**
+     * Sent by the worker when it's ready to dispatch commands.
+     */
+    static final int Ready = 0x434d4452;
+
+    /**
+     * Status of a successful dispatch.
+     */
+    private static final byte StatusSuccess = 0;
+
+    /**
+     * Status of a failed dispatch.
+     */
+    private static final byte StatusFailure = 1;
+
+    /**
+     * Constructor of the class (no instances are allowed).
+     */
+    private WorkerProtocol() {
+    }
+
+    /**
+     * Writes a request.
+     * @param output Output stream
+     * @param sequence Sequence number of the request
+     * @param commands Arguments of the commands of the pipeline
+     * @throws IOException Thrown when writing failed
+     */
+    static void writeRequest(DataOutputStream output, int sequence, List<String[]> commands) throws IOException {
+        output.writeInt(sequence);
+        output.writeInt(commands.size());
+        for (String[] args : commands) {
+            output.writeInt(args.length);
+            for (String arg : args) {
+                writeString(output, arg);
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads the commands of a request (after its sequence number).
+     * @param input Input stream
+     * @return Arguments of the commands of the pipeline
+     * @throws IOException Thrown when reading failed
+     */
+    static List<String[]> readCommands(DataInputStream input) throws IOException {
+        int count = input.readInt();
+        List<String[]> commands = new ArrayList<String[]>(count);
+        for (int i = 0; i < count; i++) {
+            String[] args = new String[input.readInt()];
+            for (int j = 0; j < args.length; j++) {
+                args[j] = readString(input);
+            }
+            commands.add(args);
+        }
+        return commands;
+    }
+
+    /**
+     * Writes a response.
+     * @param output Output stream
+     * @param sequence Sequence number of the request
+     * @param result Result of the dispatch
+     * @throws IOException Thrown when writing failed
+     */
+    static void writeResponse(DataOutputStream output, int sequence, DispatchResult result) throws IOException {
+        output.writeInt(sequence);
+        if (result.isSuccess()) {
+            output.writeByte(StatusSuccess);
+            writeOutput(output, result.getOutput());
+        }
+        else {
+            output.writeByte(StatusFailure);
+            writeString(output, result.getErrorCode().name());
+            output.writeBoolean(result.getInvalidArgument() != null);
+            if (result.getInvalidArgument() != null) {
+                writeString(output, result.getInvalidArgument());
+            }
+            writeString(output, result.getMessage() != null ? result.getMessage() : "");
+            writeOutput(output, result.getOutput());
+        }
+        output.flush();
+    }
+
+    /**
+     * Reads a response and checks that it answers the request.
+     * @param input Input stream
+     * @param sequence Sequence number of the request
+     * @return Result of the dispatch
+     * @throws IOException Thrown when reading failed or the response belongs to another request
+     */
+    static DispatchResult readResponse(DataInputStream input, int sequence) throws IOException {
+        int responseSequence = input.readInt();
+        if (responseSequence != sequence) {
+            throw new IOException("Response " + responseSequence + " doesn't match request " + sequence);
+        }
+        return readResult(input);
+    }
+
+    /**
+     * Reads the result of a response (after its sequence number).
+     * @param input Input stream
+     * @return Result of the dispatch
+     * @throws IOException Thrown when reading failed
+     */
+    private static DispatchResult readResult(DataInputStream input) throws IOException {
+        if (input.readByte() == StatusSuccess) {
+            return DispatchResult.success(readOutput(input));
+        }
+        CmdExceptionCode code = CmdExceptionCode.valueOf(readString(input));
+        String invalidArgument = input.readBoolean() ? readString(input) : null;
+        String message = readString(input);
+        return DispatchResult.failure(code, invalidArgument, message, readOutput(input));
+    }
+
+    /**
+     * Writes the captured output of a command, empty output is written as a single byte.
+     * @param output Output stream
+     * @param text Captured output, may be null
+     * @throws IOException Thrown when writing failed
+     */
+    private static void writeOutput(DataOutputStream output, String text) throws IOException {
+        boolean hasText = text != null && text.length() > 0;
+        output.writeBoolean(hasText);
+        if (hasText) {
+            writeString(output, text);
+        }
+    }
+
+    /**
+     * Reads the captured output of a command.
+     * @param input Input stream
+     * @return Captured output, null if the command didn't write anything
+     * @throws IOException Thrown when reading failed
+     */
+    private static String readOutput(DataInputStream input) throws IOException {
+        return input.readBoolean() ? readString(input) : null;
+    }
+
+    /**
+     * Writes a length-prefixed UTF-8 string (not limited to 64 KB like DataOutputStream.writeUTF).
+     * @param output Output stream
+     * @param value String value
+     * @throws IOException Thrown when writing failed
+     */
+    static void writeString(DataOutputStream output, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    /**
+     * Reads a length-prefixed UTF-8 string.
+     * @param input Input stream
+     * @return String value
+     * @throws IOException Thrown when reading failed
+     */
+    static String readString(DataInputStream input) throws IOException {
+        byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
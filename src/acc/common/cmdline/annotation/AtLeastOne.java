@@ -0,0 +1,13 @@
+package acc.common.cmdline.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation for adding the option to a group of options, of which at least one must be specified.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+public @interface AtLeastOne {
+    String[] value();
+}
@@ -0,0 +1,15 @@
+package acc.common.cmdline.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation for marking a field or a method without parameters to provide a handler object of a command group.
+ * The name of the group is defined by the {@link Name} annotation. Commands of the group are defined
+ * by the type of the field or by the return type of the method, the handler object is obtained only when
+ * a command from the group is executed (null fields are initialized using the default constructor).
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.METHOD})
+public @interface CommandGroup {
+}
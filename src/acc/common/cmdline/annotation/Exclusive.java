@@ -0,0 +1,13 @@
+package acc.common.cmdline.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation for adding the option to a group of mutually exclusive options (at most one option of the group may be specified).
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+public @interface Exclusive {
+    String[] value();
+}
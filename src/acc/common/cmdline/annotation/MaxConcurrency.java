@@ -0,0 +1,13 @@
+package acc.common.cmdline.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation for limiting the number of concurrently running instances of a command (bulkhead).
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface MaxConcurrency {
+    int value();
+}
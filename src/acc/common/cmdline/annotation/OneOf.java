@@ -0,0 +1,19 @@
+package acc.common.cmdline.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation for defining a validator accepting only one of the listed values. Large sets of values
+ * can be loaded from a resource (one value per line, lines starting with '#' are ignored), which is
+ * resolved relative to the class declaring the annotated parameter or field (e.g. the options holder).
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+public @interface OneOf {
+    String[] value() default {};
+
+    String resource() default "";
+
+    boolean ignoreCase() default false;
+}
@@ -0,0 +1,14 @@
+package acc.common.cmdline.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation for marking a command parameter holding a group of options. The type of the parameter must have
+ * a single public constructor, whose parameters are annotated like the parameters of a command. The options
+ * of the constructor are added to the options of the command and the object is created when the command is invoked.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface Options {
+}
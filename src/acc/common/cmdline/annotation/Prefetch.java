@@ -0,0 +1,14 @@
+package acc.common.cmdline.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation for marking a file parameter, which should be memory-mapped and loaded in background as soon as
+ * the command line is tokenized. The parameter must be of type MappedByteBuffer (the command gets the loaded buffer)
+ * or Future&lt;MappedByteBuffer&gt; (the command gets the pending result).
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.PARAMETER)
+public @interface Prefetch {
+}
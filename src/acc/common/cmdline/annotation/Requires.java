@@ -0,0 +1,14 @@
+package acc.common.cmdline.annotation;
+
+import java.lang.annotation.*;
+
+/**
+ * Annotation for defining options (names or short names), which must be specified whenever this option is specified.
+ * Options of commands may require other options of the command or global options, global options may require only global options.
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target({ElementType.FIELD, ElementType.PARAMETER})
+public @interface Requires {
+    String[] value();
+}
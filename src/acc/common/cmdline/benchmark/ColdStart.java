@@ -0,0 +1,313 @@
+package acc.common.cmdline.benchmark;
+
+import acc.common.cmdline.CmdException;
+import acc.common.cmdline.CmdParser;
+import acc.common.cmdline.CmdTokenizer;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * Benchmark measuring the cold start of the parser. Each run starts a fresh JVM ({@link ColdStartProbe}),
+ * which creates the parser and dispatches a single command. The wall-clock time from the start of the process
+ * to the completion of the command, the number of loaded classes and the resident memory are measured.
+ * Modes compare the reflective parser with the parser loaded from the schema cache, optionally combined with
+ * an application class data sharing archive (the "-cds" modes, JDK 13 or newer, directories of the class path
+ * are packed into jars, since archives don't support directories). Each mode starts with an unmeasured run,
+ * which creates the schema cache and the archive.
+ * Results are written as one line of key=value pairs per mode. Thresholds are read from a properties file
+ * with keys like {@code cached.wallMillis=300}, exceeded thresholds are reported and the exit code is 1.
+ * Usage: ColdStart [--commands=2000] [--parameters=5] [--impl=className] [--args="command0 --param0=1"]
+ * [--runs=5] [--modes=reflective,cached,reflective-cds,cached-cds] [--jvm="-Xmx64m"] [--thresholds=file] [--output=file]
+ * (options are defined by {@link ColdStartCommandLine}, "ColdStart help" describes them).
+ */
+public class ColdStart {
+    /**
+     * Measured metrics, in the order they are reported.
+     */
+    private static final String[] Metrics = { "wallMillis", "classes", "rssKb", "peakRssKb" };
+
+    public static void main(String[] args) {
+        ColdStartCommandLine commandLine = new ColdStartCommandLine();
+        try {
+            new CmdParser(commandLine).dispatch(args);
+        } catch (CmdException e) {
+            System.err.printf("Invalid command: %s (%s)%n", e.getMessage(), e.getInvalidArgument());
+            if (e.getCause() != null) {
+                e.getCause().printStackTrace();
+            }
+            System.exit(2);
+        }
+        System.exit(commandLine.ExitCode);
+    }
+
+    /**
+     * Measures the cold start in each mode and compares the results with the thresholds.
+     * @param commandCount Number of commands of the generated class
+     * @param parameterCount Number of parameters of each generated command
+     * @param className Class defining the command line, null if a class should be generated
+     * @param commandLine Arguments of the dispatched command, null for the default command line of the generated class
+     * @param runs Number of measured runs of each mode
+     * @param modes Measured modes
+     * @param jvm Additional options of the started JVMs, null if none
+     * @param thresholdsFile Properties file with the thresholds, null if none
+     * @param outputFile File receiving the results, null if none
+     * @return Exit code, 1 if a threshold was exceeded
+     * @throws Exception Thrown when the benchmark could not be prepared or the results could not be written
+     */
+    static int measure(int commandCount, int parameterCount, String className, String commandLine, int runs, String[] modes,
+                       String jvm, String thresholdsFile, String outputFile) throws Exception {
+        List<String> jvmOptions = Arrays.asList(CmdTokenizer.tokenize(jvm != null ? jvm : ""));
+
+        File workDirectory = File.createTempFile("coldstart", "");
+        if (!workDirectory.delete() || !workDirectory.mkdir()) {
+            throw new IllegalStateException("Unable to create directory " + workDirectory);
+        }
+
+        String classPath = System.getProperty("java.class.path");
+        if (className == null) {
+            File classDirectory = SchemaFootprint.generateClass(commandCount, parameterCount);
+            classPath = classDirectory.getPath() + File.pathSeparator + classPath;
+            className = SchemaFootprint.ClassName;
+            if (commandLine == null) {
+                commandLine = "command0 --param0=1";
+            }
+        }
+        List<String> commandArgs = Arrays.asList(CmdTokenizer.tokenize(commandLine != null ? commandLine : ""));
+
+        Properties thresholds = new Properties();
+        if (thresholdsFile != null) {
+            InputStream input = new FileInputStream(thresholdsFile);
+            try {
+                thresholds.load(input);
+            } finally {
+                input.close();
+            }
+        }
+
+        List<String> lines = new ArrayList<String>();
+        List<String> regressions = new ArrayList<String>();
+        for (String mode : modes) {
+            String line;
+            try {
+                Map<String, Long> result = measureMode(mode.trim(), runs, workDirectory, classPath, className, commandArgs, jvmOptions);
+                StringBuilder builder = new StringBuilder();
+                builder.append("mode=").append(mode.trim()).append(" runs=").append(runs);
+                for (String metric : Metrics) {
+                    builder.append(' ').append(metric).append('=').append(result.get(metric));
+                    String threshold = thresholds.getProperty(mode.trim() + "." + metric);
+                    if (threshold != null && result.get(metric) > Long.parseLong(threshold.trim())) {
+                        regressions.add("regression mode=" + mode.trim() + " metric=" + metric + " value=" + result.get(metric) + " threshold=" + threshold.trim());
+                    }
+                }
+                line = builder.toString();
+            } catch (IllegalStateException e) {
+                line = "mode=" + mode.trim() + " error=\"" + e.getMessage() + "\"";
+            }
+            // Results are printed as soon as they are measured, since the runs take a while
+            System.out.println(line);
+            lines.add(line);
+        }
+        for (String regression : regressions) {
+            System.out.println(regression);
+            lines.add(regression);
+        }
+
+        if (outputFile != null) {
+            PrintWriter writer = new PrintWriter(new OutputStreamWriter(new FileOutputStream(outputFile), "UTF-8"));
+            try {
+                for (String line : lines) {
+                    writer.println(line);
+                }
+            } finally {
+                writer.close();
+            }
+        }
+        return regressions.isEmpty() ? 0 : 1;
+    }
+
+    /**
+     * Measures the runs of a mode.
+     * @param mode Mode (reflective, cached, reflective-cds or cached-cds)
+     * @param runs Number of measured runs
+     * @param workDirectory Directory for the schema cache and the archive
+     * @param classPath Class path of the started JVMs
+     * @param className Class defining the command line
+     * @param commandArgs Arguments of the dispatched command
+     * @param jvmOptions Additional options of the started JVMs
+     * @return Median value of each metric
+     * @throws Exception Thrown when a JVM failed or the mode is unknown
+     */
+    private static Map<String, Long> measureMode(String mode, int runs, File workDirectory, String classPath, String className, List<String> commandArgs, List<String> jvmOptions) throws Exception {
+        boolean useCds = mode.endsWith("-cds");
+        String baseMode = useCds ? mode.substring(0, mode.length() - 4) : mode;
+        if (!baseMode.equals("reflective") && !baseMode.equals("cached")) {
+            throw new IllegalStateException("Unknown mode " + mode);
+        }
+
+        List<String> command = new ArrayList<String>();
+        command.add(System.getProperty("java.home") + File.separator + "bin" + File.separator + "java");
+        command.addAll(jvmOptions);
+        int archiveOptionIndex = command.size();
+        command.add("-cp");
+        command.add(useCds ? toJarClassPath(classPath, workDirectory) : classPath);
+        command.add(ColdStartProbe.class.getName());
+        command.add(className);
+        command.add(baseMode.equals("cached") ? new File(workDirectory, mode + ".schema").getPath() : "-");
+        command.addAll(commandArgs);
+
+        // Unmeasured run creating the schema cache (and the archive of classes loaded until exit)
+        File archive = new File(workDirectory, mode + ".jsa");
+        if (useCds) {
+            command.add(archiveOptionIndex, "-XX:ArchiveClassesAtExit=" + archive.getPath());
+        }
+        runProbe(command);
+        if (useCds) {
+            command.set(archiveOptionIndex, "-XX:SharedArchiveFile=" + archive.getPath());
+        }
+
+        Map<String, long[]> samples = new HashMap<String, long[]>();
+        for (String metric : Metrics) {
+            samples.put(metric, new long[runs]);
+        }
+        for (int i = 0; i < runs; i++) {
+            Map<String, Long> result = runProbe(command);
+            for (String metric : Metrics) {
+                samples.get(metric)[i] = result.get(metric);
+            }
+        }
+
+        Map<String, Long> medians = new LinkedHashMap<String, Long>();
+        for (String metric : Metrics) {
+            long[] values = samples.get(metric);
+            Arrays.sort(values);
+            medians.put(metric, values[values.length / 2]);
+        }
+        return medians;
+    }
+
+    /**
+     * Replaces directories of the class path with jars containing their files.
+     * @param classPath Class path
+     * @param workDirectory Directory for the jars
+     * @return Class path with jars only
+     * @throws Exception Thrown when a jar could not be written
+     */
+    private static String toJarClassPath(String classPath, File workDirectory) throws Exception {
+        StringBuilder builder = new StringBuilder();
+        String[] entries = classPath.split(File.pathSeparator);
+        for (int i = 0; i < entries.length; i++) {
+            File entry = new File(entries[i]);
+            if (entry.isDirectory()) {
+                File jar = new File(workDirectory, "classpath" + i + ".jar");
+                if (!jar.isFile()) {
+                    JarOutputStream output = new JarOutputStream(new FileOutputStream(jar));
+                    try {
+                        addToJar(output, entry, "");
+                    } finally {
+                        output.close();
+                    }
+                }
+                entry = jar;
+            }
+            if (builder.length() > 0) {
+                builder.append(File.pathSeparator);
+            }
+            builder.append(entry.getPath());
+        }
+        return builder.toString();
+    }
+
+    /**
+     * Adds the files of a directory to the jar.
+     * @param output Jar stream
+     * @param directory Directory
+     * @param prefix Path of the directory in the jar
+     * @throws Exception Thrown when a file could not be read or written
+     */
+    private static void addToJar(JarOutputStream output, File directory, String prefix) throws Exception {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        byte[] buffer = new byte[8192];
+        for (File file : files) {
+            if (file.isDirectory()) {
+                output.putNextEntry(new JarEntry(prefix + file.getName() + "/"));
+                output.closeEntry();
+                addToJar(output, file, prefix + file.getName() + "/");
+                continue;
+            }
+            output.putNextEntry(new JarEntry(prefix + file.getName()));
+            InputStream input = new FileInputStream(file);
+            try {
+                int length;
+                while ((length = input.read(buffer)) > 0) {
+                    output.write(buffer, 0, length);
+                }
+            } finally {
+                input.close();
+            }
+            output.closeEntry();
+        }
+    }
+
+    /**
+     * Starts a JVM running the probe and collects its measurements.
+     * @param command Command starting the JVM
+     * @return Value of each metric
+     * @throws Exception Thrown when the JVM failed
+     */
+    private static Map<String, Long> runProbe(List<String> command) throws Exception {
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        long start = System.nanoTime();
+        Process process = builder.start();
+        process.getOutputStream().close();
+
+        Map<String, Long> result = new HashMap<String, Long>();
+        StringBuilder unexpectedOutput = new StringBuilder();
+        boolean success = false;
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.equals(ColdStartProbe.DispatchedMarker)) {
+                    result.put("wallMillis", (System.nanoTime() - start) / 1000000);
+                }
+                else if (line.equals("success=true")) {
+                    success = true;
+                }
+                else if (line.indexOf('=') > 0 && Arrays.asList(Metrics).contains(line.substring(0, line.indexOf('=')))) {
+                    result.put(line.substring(0, line.indexOf('=')), Long.parseLong(line.substring(line.indexOf('=') + 1)));
+                }
+                else {
+                    unexpectedOutput.append(line).append(' ');
+                }
+            }
+        } finally {
+            reader.close();
+        }
+
+        int exitCode = process.waitFor();
+        if (exitCode != 0 || !success || result.size() != Metrics.length) {
+            throw new IllegalStateException("Probe failed with exit code " + exitCode + ": " + unexpectedOutput.toString().trim().replace('"', '\''));
+        }
+        return result;
+    }
+}
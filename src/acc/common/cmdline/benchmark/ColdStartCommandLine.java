@@ -0,0 +1,63 @@
+package acc.common.cmdline.benchmark;
+
+import acc.common.cmdline.CommandOutput;
+import acc.common.cmdline.annotation.*;
+
+/**
+ * The class contains the commands of the {@link ColdStart} benchmark.
+ */
+public class ColdStartCommandLine {
+    /**
+     * Exit code of the benchmark, 1 when a threshold was exceeded.
+     */
+    int ExitCode;
+
+    @DefaultCommand
+    @Name(name = "run", description = "Measures the cold start in each mode and compares the results with the thresholds")
+    public void run(
+            @Name(name = "commands", description = "Number of commands of the generated class")
+            @DefaultValue("2000")
+            @LongRange(min = 1, max = 100000)
+            int commandCount,
+
+            @Name(name = "parameters", description = "Number of parameters of each generated command")
+            @DefaultValue("5")
+            @LongRange(min = 0, max = 200)
+            int parameterCount,
+
+            @Name(name = "impl", description = "Class defining the command line, a class is generated when not specified")
+            String className,
+
+            @Name(name = "args", description = "Arguments of the dispatched command (command0 --param0=1 for the generated class)")
+            String commandLine,
+
+            @Name(name = "runs", description = "Number of measured runs of each mode")
+            @DefaultValue("5")
+            @LongRange(min = 1, max = 1000)
+            int runs,
+
+            @Name(name = "modes", description = "Measured modes (reflective, cached, reflective-cds, cached-cds)")
+            @DefaultValue("reflective,cached")
+            String[] modes,
+
+            @Name(name = "jvm", description = "Additional options of the started JVMs")
+            String jvm,
+
+            @Name(name = "thresholds", description = "Properties file with thresholds like cached.wallMillis=300")
+            String thresholdsFile,
+
+            @Name(name = "output", description = "File receiving the results")
+            String outputFile) throws Exception {
+        this.ExitCode = ColdStart.measure(commandCount, parameterCount, className, commandLine, runs, modes, jvm, thresholdsFile, outputFile);
+    }
+
+    @Help
+    @Name(name = "help", shortName = "h", description = "Help command displaying the usage information")
+    public void help(
+            @Name(name = "help", description = "Help text")
+            String help,
+
+            CommandOutput output) {
+        output.println(help);
+    }
+}
@@ -0,0 +1,77 @@
+package acc.common.cmdline.benchmark;
+
+import acc.common.cmdline.CmdParser;
+import acc.common.cmdline.DispatchOptions;
+import acc.common.cmdline.DispatchResult;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+
+/**
+ * Entry point of a JVM started by {@link ColdStart}. It creates the parser, dispatches a single command
+ * and reports its measurements on the standard output, so nothing but the parser is loaded before
+ * the first dispatch. The command output is captured, so it doesn't mix with the report.
+ * Usage: ColdStartProbe className schemaCache|- [commandArgs...]
+ */
+public final class ColdStartProbe {
+    /**
+     * Line written as soon as the first command completes.
+     */
+    static final String DispatchedMarker = "#dispatched";
+
+    /**
+     * Constructor of the class (no instances are allowed).
+     */
+    private ColdStartProbe() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        Object impl = Class.forName(args[0]).getDeclaredConstructor().newInstance();
+        CmdParser parser = args[1].equals("-") ? new CmdParser(impl) : new CmdParser(impl, new File(args[1]));
+        DispatchResult result = parser.tryDispatch(Arrays.copyOfRange(args, 2, args.length), new DispatchOptions().setCaptureOutput(true));
+        System.out.println(DispatchedMarker);
+        System.out.flush();
+
+        // Management classes are loaded only now, so they add the same number of classes in all modes
+        System.out.println("success=" + result.isSuccess());
+        System.out.println("classes=" + ManagementFactory.getClassLoadingMXBean().getLoadedClassCount());
+        System.out.println("rssKb=" + readStatus("VmRSS"));
+        System.out.println("peakRssKb=" + readStatus("VmHWM"));
+        System.out.flush();
+    }
+
+    /**
+     * Reads a memory value of this process from /proc/self/status (available on Linux only).
+     * @param key Name of the value (e.g. VmRSS)
+     * @return Value in kilobytes, -1 if the value is not available
+     */
+    private static long readStatus(String key) {
+        File file = new File("/proc/self/status");
+        if (!file.isFile()) {
+            return -1;
+        }
+        try {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "US-ASCII"));
+            try {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.startsWith(key + ":")) {
+                        // Format: "VmRSS:     12345 kB"
+                        String value = line.substring(key.length() + 1).trim();
+                        int end = value.indexOf(' ');
+                        return Long.parseLong(end > 0 ? value.substring(0, end) : value);
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        } catch (Exception e) {
+            // Value is reported as unavailable
+        }
+        return -1;
+    }
+}
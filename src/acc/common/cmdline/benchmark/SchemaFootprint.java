@@ -0,0 +1,128 @@
+package acc.common.cmdline.benchmark;
+
+import acc.common.cmdline.CmdParser;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.URL;
+import java.net.URLClassLoader;
+
+/**
+ * Benchmark measuring the heap retained by a parser of a large generated command line.
+ * A class with the requested number of commands is generated and compiled (a JDK is required),
+ * the heap is measured before and after the parser is created.
+ * Usage: SchemaFootprint [commands] [parametersPerCommand]
+ */
+public class SchemaFootprint {
+    /**
+     * Name of the generated class.
+     */
+    static final String ClassName = "GeneratedCommands";
+
+    public static void main(String[] args) throws Exception {
+        int commandCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+        int parameterCount = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+
+        File directory = generateClass(commandCount, parameterCount);
+        ClassLoader classLoader = new URLClassLoader(new URL[] { directory.toURI().toURL() }, SchemaFootprint.class.getClassLoader());
+        Class<?> type = classLoader.loadClass(ClassName);
+        Object impl = type.getDeclaredConstructor().newInstance();
+        // Reflection data of the class is not a part of the parser
+        type.getDeclaredMethods();
+        type.getFields();
+
+        long before = getUsedMemory();
+        CmdParser parser = new CmdParser(impl);
+        long after = getUsedMemory();
+        parser.dispatch(new String[] { "command0", "--param0=1" });
+
+        long bytes = after - before;
+        System.out.printf("commands=%d%n", commandCount);
+        System.out.printf("parametersPerCommand=%d%n", parameterCount);
+        System.out.printf("parserBytes=%d%n", bytes);
+        System.out.printf("bytesPerCommand=%d%n", bytes / commandCount);
+        System.out.printf("bytesPerParameter=%d%n", parameterCount > 0 ? bytes / ((long) commandCount * parameterCount) : 0);
+    }
+
+    /**
+     * Generates and compiles a class with the specified number of commands (a JDK is required).
+     * @param commandCount Number of commands
+     * @param parameterCount Number of parameters of each command
+     * @return Temporary directory containing the compiled class
+     * @throws Exception Thrown when the class could not be generated or compiled
+     */
+    static File generateClass(int commandCount, int parameterCount) throws Exception {
+        File directory = File.createTempFile("commands", "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IllegalStateException("Unable to create directory " + directory);
+        }
+        File source = new File(directory, ClassName + ".java");
+        generateSource(source, commandCount, parameterCount);
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("Java compiler is not available, run the benchmark on a JDK");
+        }
+        String classPath = System.getProperty("java.class.path");
+        if (compiler.run(null, null, null, "-cp", classPath, "-d", directory.getPath(), source.getPath()) != 0) {
+            throw new IllegalStateException("Unable to compile " + source);
+        }
+        return directory;
+    }
+
+    /**
+     * Generates source code of a class with the specified number of commands. Commands use a few
+     * distinct parameter names, descriptions and validators, like generated command lines usually do.
+     * @param file Source file
+     * @param commandCount Number of commands
+     * @param parameterCount Number of parameters of each command
+     * @throws Exception Thrown when the file could not be written
+     */
+    private static void generateSource(File file, int commandCount, int parameterCount) throws Exception {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write("import acc.common.cmdline.annotation.*;\n");
+            writer.write("public class " + ClassName + " {\n");
+            for (int i = 0; i < commandCount; i++) {
+                writer.write("    @Name(name = \"command" + i + "\", description = \"Generated command\")\n");
+                writer.write("    public void command" + i + "(");
+                for (int j = 0; j < parameterCount; j++) {
+                    if (j > 0) {
+                        writer.write(", ");
+                    }
+                    writer.write("@Name(name = \"param" + j + "\", shortName = \"p" + j + "\", description = \"Parameter " + j + "\") ");
+                    if (j % 2 == 0) {
+                        writer.write("@LongRange(min = 0, max = 1000) @DefaultValue(\"0\") long param" + j);
+                    }
+                    else {
+                        writer.write("@NonEmpty @DefaultValue(\"value\") String param" + j);
+                    }
+                }
+                writer.write(") {\n    }\n");
+            }
+            writer.write("}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Returns the size of the used heap after a garbage collection.
+     * @return Used heap in bytes
+     * @throws InterruptedException Thrown when the thread was interrupted while waiting for the collection
+     */
+    private static long getUsedMemory() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
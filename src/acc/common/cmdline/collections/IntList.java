@@ -0,0 +1,162 @@
+package acc.common.cmdline.collections;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Implements a list of int values stored in a primitive array (values are boxed only when accessed
+ * through the {@link java.util.List} interface).
+ */
+public class IntList extends AbstractList<Integer> implements RandomAccess {
+    /**
+     * Default capacity of a new list.
+     */
+    private static final int DefaultCapacity = 8;
+
+    /**
+     * Values of the list.
+     */
+    private int[] _values;
+
+    /**
+     * Number of values in the list.
+     */
+    private int _size;
+
+    /**
+     * Constructor of the class.
+     */
+    public IntList() {
+        this(DefaultCapacity);
+    }
+
+    /**
+     * Constructor of the class.
+     * @param capacity Initial capacity of the list
+     */
+    public IntList(int capacity) {
+        this._values = new int[capacity];
+    }
+
+    /**
+     * Constructor of the class creating a copy of another list.
+     * @param values List to copy
+     */
+    public IntList(IntList values) {
+        this._values = values.toIntArray();
+        this._size = this._values.length;
+    }
+
+    /**
+     * Returns the value at the specified position without boxing it.
+     * @param index Index of the value
+     * @return Value at the specified position
+     */
+    public int getInt(int index) {
+        this.checkIndex(index);
+        return this._values[index];
+    }
+
+    /**
+     * Appends the value to the end of the list.
+     * @param value Value to add
+     */
+    public void addInt(int value) {
+        if (this._size == this._values.length) {
+            this._values = Arrays.copyOf(this._values, Math.max(DefaultCapacity, this._size * 2));
+        }
+        this._values[this._size++] = value;
+        this.modCount++;
+    }
+
+    /**
+     * Returns a copy of the values as an array.
+     * @return Array of values
+     */
+    public int[] toIntArray() {
+        return Arrays.copyOf(this._values, this._size);
+    }
+
+    /**
+     * Returns the value at the specified index.
+     * @param index Index of the value
+     * @return Value
+     */
+    @Override
+    public Integer get(int index) {
+        return this.getInt(index);
+    }
+
+    /**
+     * Replaces the value at the specified index.
+     * @param index Index of the value
+     * @param value New value
+     * @return Previous value
+     */
+    @Override
+    public Integer set(int index, Integer value) {
+        this.checkIndex(index);
+        int previous = this._values[index];
+        this._values[index] = value;
+        return previous;
+    }
+
+    /**
+     * Inserts the value at the specified index.
+     * @param index Index of the value
+     * @param value Value to insert
+     */
+    @Override
+    public void add(int index, Integer value) {
+        if (index < 0 || index > this._size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this._size);
+        }
+        this.addInt(0);
+        System.arraycopy(this._values, index, this._values, index + 1, this._size - index - 1);
+        this._values[index] = value;
+    }
+
+    /**
+     * Removes the value at the specified index.
+     * @param index Index of the value
+     * @return Removed value
+     */
+    @Override
+    public Integer remove(int index) {
+        this.checkIndex(index);
+        int previous = this._values[index];
+        System.arraycopy(this._values, index + 1, this._values, index, this._size - index - 1);
+        this._size--;
+        this.modCount++;
+        return previous;
+    }
+
+    /**
+     * Removes all values from the list.
+     */
+    @Override
+    public void clear() {
+        this._size = 0;
+        this.modCount++;
+    }
+
+    /**
+     * Returns the number of values in the list.
+     * @return Number of values
+     */
+    @Override
+    public int size() {
+        return this._size;
+    }
+
+    /**
+     * Checks whether the index is within the list.
+     * @param index Index to check
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= this._size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this._size);
+        }
+    }
+}
@@ -0,0 +1,308 @@
+package acc.common.cmdline.collections;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Implements a set of int values stored in an open addressing hash table of primitive values
+ * (values are boxed only when accessed through the {@link java.util.Set} interface).
+ */
+public class IntSet extends AbstractSet<Integer> {
+    /**
+     * Default capacity of a new set (must be a power of two).
+     */
+    private static final int DefaultCapacity = 16;
+
+    /**
+     * Hash table, zero marks an empty slot.
+     */
+    private int[] _table;
+
+    /**
+     * Number of values in the hash table (without zero).
+     */
+    private int _count;
+
+    /**
+     * True if the set contains zero (which is not stored in the hash table).
+     */
+    private boolean _hasZero;
+
+    /**
+     * Constructor of the class.
+     */
+    public IntSet() {
+        this._table = new int[DefaultCapacity];
+    }
+
+    /**
+     * Constructor of the class creating a copy of another set.
+     * @param values Set to copy
+     */
+    public IntSet(IntSet values) {
+        this._table = values._table.clone();
+        this._count = values._count;
+        this._hasZero = values._hasZero;
+    }
+
+    /**
+     * Checks whether the set contains the specified value, without boxing it.
+     * @param value Value to check
+     * @return True if the set contains the value
+     */
+    public boolean containsInt(int value) {
+        if (value == 0) {
+            return this._hasZero;
+        }
+        return this._table[this.findSlot(this._table, value)] == value;
+    }
+
+    /**
+     * Adds the value to the set, without boxing it.
+     * @param value Value to add
+     * @return True if the set didn't contain the value
+     */
+    public boolean addInt(int value) {
+        if (value == 0) {
+            boolean added = !this._hasZero;
+            this._hasZero = true;
+            return added;
+        }
+
+        int slot = this.findSlot(this._table, value);
+        if (this._table[slot] == value) {
+            return false;
+        }
+        this._table[slot] = value;
+        this._count++;
+        if (this._count * 2 > this._table.length) {
+            this.resize(this._table.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the value from the set, without boxing it.
+     * @param value Value to remove
+     * @return True if the set contained the value
+     */
+    public boolean removeInt(int value) {
+        if (value == 0) {
+            boolean removed = this._hasZero;
+            this._hasZero = false;
+            return removed;
+        }
+
+        int slot = this.findSlot(this._table, value);
+        if (this._table[slot] != value) {
+            return false;
+        }
+        this.deleteSlot(slot, null);
+        return true;
+    }
+
+    /**
+     * Checks whether the set contains the specified value.
+     * @param value Value to check
+     * @return True if the set contains the value
+     */
+    @Override
+    public boolean contains(Object value) {
+        return value instanceof Integer && this.containsInt((Integer)value);
+    }
+
+    /**
+     * Adds the value to the set.
+     * @param value Value to add
+     * @return True if the set didn't contain the value
+     */
+    @Override
+    public boolean add(Integer value) {
+        return this.addInt(value);
+    }
+
+    /**
+     * Removes the value from the set.
+     * @param value Value to remove
+     * @return True if the set contained the value
+     */
+    @Override
+    public boolean remove(Object value) {
+        return value instanceof Integer && this.removeInt((Integer)value);
+    }
+
+    /**
+     * Removes all values from the set.
+     */
+    @Override
+    public void clear() {
+        this._table = new int[DefaultCapacity];
+        this._count = 0;
+        this._hasZero = false;
+    }
+
+    /**
+     * Returns the number of values in the set.
+     * @return Number of values
+     */
+    @Override
+    public int size() {
+        return this._count + (this._hasZero ? 1 : 0);
+    }
+
+    /**
+     * Returns an iterator over the values of the set (in no particular order). The iterator supports removing values.
+     * @return Iterator
+     */
+    @Override
+    public Iterator<Integer> iterator() {
+        return new Iterator<Integer>() {
+            /**
+             * Number of slots not examined yet. The table is scanned from the end, so the values shifted back
+             * by {@link #remove()} stay in the examined part (except the values shifted over the end of the table).
+             */
+            private int _index = _table.length;
+
+            /**
+             * True if zero was not returned yet.
+             */
+            private boolean _nextZero = _hasZero;
+
+            /**
+             * Values shifted by {@link #remove()} from the beginning of the table over its end (into the examined part),
+             * they are returned after the scan, null if there are no such values.
+             */
+            private IntList _wrapped;
+
+            /**
+             * Number of the returned values of the wrapped list.
+             */
+            private int _wrappedIndex;
+
+            /**
+             * Slot of the last returned value, -1 if the value is not returned from a slot (zero or a wrapped value),
+             * -2 if there is no value to remove.
+             */
+            private int _last = -2;
+
+            /**
+             * Last returned value.
+             */
+            private int _lastValue;
+
+            @Override
+            public boolean hasNext() {
+                while (this._index > 0 && _table[this._index - 1] == 0) {
+                    this._index--;
+                }
+                return this._nextZero || this._index > 0 || (this._wrapped != null && this._wrappedIndex < this._wrapped.size());
+            }
+
+            @Override
+            public Integer next() {
+                if (!this.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                if (this._nextZero) {
+                    this._nextZero = false;
+                    this._last = -1;
+                    this._lastValue = 0;
+                }
+                else if (this._index > 0) {
+                    this._last = --this._index;
+                    this._lastValue = _table[this._last];
+                }
+                else {
+                    this._last = -1;
+                    this._lastValue = this._wrapped.getInt(this._wrappedIndex++);
+                }
+                return this._lastValue;
+            }
+
+            @Override
+            public void remove() {
+                if (this._last == -2) {
+                    throw new IllegalStateException();
+                }
+                if (this._last == -1) {
+                    removeInt(this._lastValue);
+                }
+                else {
+                    if (this._wrapped == null) {
+                        this._wrapped = new IntList();
+                    }
+                    deleteSlot(this._last, this._wrapped);
+                }
+                this._last = -2;
+            }
+        };
+    }
+
+    /**
+     * Empties a slot of the hash table, the following values of the probe sequence are shifted back
+     * to keep them reachable.
+     * @param slot Index of the slot
+     * @param wrapped List collecting the values shifted from the beginning of the table over its end, null if not needed
+     */
+    private void deleteSlot(int slot, IntList wrapped) {
+        int mask = this._table.length - 1;
+        int next = slot;
+        while (true) {
+            next = (next + 1) & mask;
+            int current = this._table[next];
+            if (current == 0) {
+                break;
+            }
+            int home = hash(current) & mask;
+            if (((next - home) & mask) >= ((next - slot) & mask)) {
+                if (wrapped != null && next < slot) {
+                    wrapped.addInt(current);
+                }
+                this._table[slot] = current;
+                slot = next;
+            }
+        }
+        this._table[slot] = 0;
+        this._count--;
+    }
+
+    /**
+     * Finds the slot containing the value or the empty slot where the value should be stored.
+     * @param table Hash table
+     * @param value Non-zero value
+     * @return Index of the slot
+     */
+    private int findSlot(int[] table, int value) {
+        int mask = table.length - 1;
+        int slot = hash(value) & mask;
+        while (table[slot] != 0 && table[slot] != value) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Resizes the hash table.
+     * @param capacity New capacity (must be a power of two)
+     */
+    private void resize(int capacity) {
+        int[] table = new int[capacity];
+        for (int value : this._table) {
+            if (value != 0) {
+                table[this.findSlot(table, value)] = value;
+            }
+        }
+        this._table = table;
+    }
+
+    /**
+     * Spreads the bits of the value.
+     * @param value Value to hash
+     * @return Hash code
+     */
+    private static int hash(int value) {
+        int hash = value * 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
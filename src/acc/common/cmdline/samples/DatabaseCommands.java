@@ -0,0 +1,30 @@
+package acc.common.cmdline.samples;
+
+import acc.common.cmdline.CommandOutput;
+import acc.common.cmdline.annotation.*;
+
+/**
+ * The class contains implementations of commands in the "db" command group.
+ */
+public class DatabaseCommands {
+    @Name(name = "verbose", shortName = "v", description = "Verbose output of database commands")
+    public boolean verbose = false;
+
+    @Name(name = "migrate", shortName = "m", description = "Migrates database to the specified version")
+    public void migrate(
+            @Required
+            @Name(name = "to", shortName = "t", description = "Target version")
+            @LongRange(min = 1, max = 1000)
+            int version,
+
+            CommandOutput output) {
+        output.printf("verbose=%b%n", this.verbose);
+        output.printf("Migrate Command: %d%n", version);
+    }
+
+    @Name(name = "status", shortName = "s", description = "Displays the current version of database")
+    public void status(CommandOutput output) {
+        output.printf("verbose=%b%n", this.verbose);
+        output.println("Status Command");
+    }
+}
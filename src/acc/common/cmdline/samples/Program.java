@@ -13,11 +13,14 @@ public class Program {
 
         try {
             CmdParser cmdParser = new CmdParser(new CommandLineImpl());
-            cmdParser.dispatch(args);
+            cmdParser.dispatchPipeline(args);
         }
         catch (CmdException e) {
             System.err.printf("Invalid command: %s %n", e.getMessage());
             System.err.printf("ErrorCode=%s, Argument=%s%n", e.getErrorCode().toString(), e.getInvalidArgument());
+            if (!e.getSuggestions().isEmpty()) {
+                System.err.printf("Did you mean: %s%n", e.getSuggestions());
+            }
         }
     }
 }
@@ -0,0 +1,186 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.annotation.Name;
+import acc.common.cmdline.annotation.Unnamed;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the line-oriented batch dispatch and of the tokenizer splitting the lines.
+ */
+public class BatchDispatchTest {
+    /**
+     * Object receiving the commands.
+     */
+    private Echo _impl;
+
+    /**
+     * Parser of the commands.
+     */
+    private CmdParser _parser;
+
+    /**
+     * Listener recording the outcomes of the lines.
+     */
+    private Recorder _listener;
+
+    /**
+     * Output of the commands.
+     */
+    private ByteArrayOutputStream _output;
+
+    /**
+     * Options of the dispatch writing the output of the commands to the buffer.
+     */
+    private DispatchOptions _options;
+
+    /**
+     * Creates the parser and the listener for each test.
+     * @throws Exception Thrown when the definition of command line is invalid
+     */
+    @Before
+    public void setUp() throws Exception {
+        this._impl = new Echo();
+        this._parser = new CmdParser(this._impl);
+        this._listener = new Recorder();
+        this._output = new ByteArrayOutputStream();
+        this._options = new DispatchOptions().setOutput(new PrintStream(this._output, true, "UTF-8"));
+    }
+
+    @Test
+    public void lineNumbersAndErrors() throws Exception {
+        String batch = "echo a\n"
+                + "\n"
+                + "# comment\n"
+                + "echo\n"
+                + "unknown x\n"
+                + "echo 'unterminated\n"
+                + "   \n"
+                + "echo b ;; echo c\n";
+        long failed = this._parser.dispatchStream(new StringReader(batch), this._options, this._listener);
+        assertEquals(3, failed);
+        assertEquals(Arrays.asList(
+                "1 echo a OK",
+                "4 echo DISPATCH_MISSING_REQUIRED_PARAMETER",
+                "5 unknown x DISPATCH_UNKNOWN_COMMAND",
+                "6 echo 'unterminated DISPATCH_INVALID_SYNTAX",
+                "8 echo b ;; echo c OK"), this._listener.Outcomes);
+        assertEquals(Arrays.asList("a", "b", "c"), this._impl.Words);
+    }
+
+    @Test
+    public void quotedSeparatorIsAnArgument() throws Exception {
+        String batch = "echo ';;' ;; echo \";;\"\n"
+                + "echo \\;; ;; echo x\n"
+                + "echo a;; ;; echo ;;x\n";
+        long failed = this._parser.dispatchStream(new StringReader(batch), this._options, this._listener);
+        assertEquals(0, failed);
+        assertEquals(Arrays.asList(";;", ";;", ";;", "x", "a;;", ";;x"), this._impl.Words);
+    }
+
+    @Test
+    public void failedLineDoesNotStopBatch() throws Exception {
+        String batch = "echo a ;; unknown ;; echo b\necho c\n";
+        long failed = this._parser.dispatchStream(new StringReader(batch), this._options, this._listener);
+        assertEquals(1, failed);
+        assertEquals(Arrays.asList("1 echo a ;; unknown ;; echo b DISPATCH_UNKNOWN_COMMAND", "2 echo c OK"), this._listener.Outcomes);
+        assertEquals(Arrays.asList("c"), this._impl.Words);
+    }
+
+    @Test
+    public void dispatchFile() throws Exception {
+        File file = File.createTempFile("batch", ".txt");
+        try {
+            OutputStream output = new FileOutputStream(file);
+            try {
+                output.write("echo \u00e9\r\necho \"two words\"\n".getBytes("UTF-8"));
+            } finally {
+                output.close();
+            }
+            PrintStream originalOut = System.out;
+            System.setOut(new PrintStream(this._output, true, "UTF-8"));
+            try {
+                assertEquals(0, this._parser.dispatchFile(file, this._listener));
+            } finally {
+                System.setOut(originalOut);
+            }
+        } finally {
+            file.delete();
+        }
+        assertEquals(Arrays.asList("\u00e9", "two words"), this._impl.Words);
+        assertEquals(String.format("\u00e9%ntwo words%n"), this._output.toString("UTF-8"));
+    }
+
+    @Test
+    public void tokenize() throws Exception {
+        assertArrayEquals(new String[] { "a", "b c", "d\"e", "f\\g", "h i", ";;" }, CmdTokenizer.tokenize("a 'b c' \"d\\\"e\" f\\\\g h\\ i ;;"));
+        assertArrayEquals(new String[0], CmdTokenizer.tokenize("   "));
+        assertArrayEquals(new String[] { "" }, CmdTokenizer.tokenize("''"));
+        try {
+            CmdTokenizer.tokenize("a\\");
+            fail("Escape at the end of line was accepted");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_INVALID_SYNTAX, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void tokenizePipeline() throws Exception {
+        List<String[]> commands = CmdTokenizer.tokenizePipeline("a ;; b ';;' ;; ;;");
+        assertEquals(4, commands.size());
+        assertArrayEquals(new String[] { "a" }, commands.get(0));
+        assertArrayEquals(new String[] { "b", ";;" }, commands.get(1));
+        assertArrayEquals(new String[0], commands.get(2));
+        assertArrayEquals(new String[0], commands.get(3));
+        assertEquals(1, CmdTokenizer.tokenizePipeline("").size());
+    }
+
+    /**
+     * Listener recording the outcomes of the lines.
+     */
+    private static class Recorder implements IBatchListener {
+        /**
+         * Outcomes of the lines (line number, text and the error code or OK).
+         */
+        final List<String> Outcomes = new ArrayList<String>();
+
+        @Override
+        public void lineCompleted(long lineNumber, String line, CmdException error) {
+            this.Outcomes.add(lineNumber + " " + line + " " + (error == null ? "OK" : error.getErrorCode().name()));
+        }
+    }
+
+    /**
+     * Command line with a command echoing its argument.
+     */
+    public static class Echo {
+        /**
+         * Echoed words.
+         */
+        final List<String> Words = new ArrayList<String>();
+
+        @Name(name = "echo")
+        public void echo(@Unnamed(description = "Word") String word, CommandOutput output) throws CmdException {
+            if (word == null) {
+                throw new CmdException(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, "word", "Word is missing");
+            }
+            this.Words.add(word);
+            output.println(word);
+        }
+    }
+}
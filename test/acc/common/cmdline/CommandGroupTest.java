@@ -0,0 +1,168 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.annotation.CommandGroup;
+import acc.common.cmdline.annotation.Name;
+import acc.common.cmdline.samples.CommandLineImpl;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the dispatch to commands of nested command groups.
+ */
+public class CommandGroupTest {
+    /**
+     * Options capturing the output of the commands.
+     */
+    private static final DispatchOptions Capture = new DispatchOptions().setCaptureOutput(true);
+
+    @Test
+    public void dispatchToGroupCommand() throws Exception {
+        CommandLineImpl impl = new CommandLineImpl();
+        CmdParser parser = new CmdParser(impl);
+        assertNull(impl.databaseCommands);
+
+        DispatchResult result = parser.tryDispatch(new String[] { "db", "migrate", "--to=5" }, Capture);
+        assertTrue(result.getMessage(), result.isSuccess());
+        assertTrue(result.getOutput(), result.getOutput().contains("Migrate Command: 5"));
+        assertNotNull("Handler is created when a command of the group is executed", impl.databaseCommands);
+    }
+
+    @Test
+    public void groupOptionsAndShortNames() throws Exception {
+        CmdParser parser = new CmdParser(new CommandLineImpl());
+        DispatchResult result = parser.tryDispatch(new String[] { "db", "-v=true", "s" }, Capture);
+        assertTrue(result.getMessage(), result.isSuccess());
+        assertTrue(result.getOutput(), result.getOutput().contains("verbose=true"));
+
+        ParsedCommand command = parser.parse(new String[] { "--global=x", "db", "m", "-t=7" });
+        assertEquals("db migrate", command.getCommandName());
+        assertEquals(7, command.getArguments()[0]);
+    }
+
+    @Test
+    public void unknownGroupCommand() throws Exception {
+        CmdParser parser = new CmdParser(new CommandLineImpl());
+        DispatchResult result = parser.tryDispatch(new String[] { "db", "drop" });
+        assertFalse(result.isSuccess());
+        assertEquals(CmdExceptionCode.DISPATCH_UNKNOWN_COMMAND, result.getErrorCode());
+        assertEquals("drop", result.getInvalidArgument());
+    }
+
+    @Test
+    public void nestedGroups() throws Exception {
+        Root root = new Root();
+        CmdParser parser = new CmdParser(root);
+        ParsedCommand command = parser.parse(new String[] { "outer", "inner", "run", "--value=3" });
+        assertEquals("outer inner run", command.getCommandName());
+
+        CommandOutput output = new CommandOutput();
+        command.execute(root, output);
+        assertEquals("run 3", output.getText());
+        assertEquals(1, root.Outer.GroupCalls);
+    }
+
+    @Test
+    public void handlerConstructorFailure() throws Exception {
+        CmdParser parser = new CmdParser(new Failing());
+        try {
+            parser.dispatch(new String[] { "broken", "run" });
+            fail("Handler was created");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_INVOKE_ERROR, e.getErrorCode());
+            assertEquals("Handler failed", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void groupMethodWithParameters() {
+        try {
+            new CmdParser(new InvalidGroup());
+            fail("Group method with parameters was accepted");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.PARSE_INVALID_COMMAND_GROUP, e.getErrorCode());
+        }
+    }
+
+    /**
+     * Command line with a group provided by a method.
+     */
+    public static class Root {
+        /**
+         * Handler returned by the group method.
+         */
+        final OuterGroup Outer = new OuterGroup();
+
+        @CommandGroup
+        @Name(name = "outer")
+        public OuterGroup outer() {
+            this.Outer.GroupCalls++;
+            return this.Outer;
+        }
+    }
+
+    /**
+     * Command group containing another group.
+     */
+    public static class OuterGroup {
+        /**
+         * Number of calls of the group method.
+         */
+        int GroupCalls;
+
+        @CommandGroup
+        @Name(name = "inner")
+        public InnerGroup Inner;
+    }
+
+    /**
+     * Innermost command group.
+     */
+    public static class InnerGroup {
+        @Name(name = "run")
+        public void run(@Name(name = "value") int value, CommandOutput output) {
+            output.print("run " + value);
+        }
+    }
+
+    /**
+     * Command line with a group whose handler can't be created.
+     */
+    public static class Failing {
+        @CommandGroup
+        @Name(name = "broken")
+        public FailingGroup Broken;
+    }
+
+    /**
+     * Command group failing in its constructor.
+     */
+    public static class FailingGroup {
+        /**
+         * Constructor of the class.
+         */
+        public FailingGroup() {
+            throw new IllegalStateException("Handler failed");
+        }
+
+        @Name(name = "run")
+        public void run() {
+        }
+    }
+
+    /**
+     * Command line with an invalid group method.
+     */
+    public static class InvalidGroup {
+        @CommandGroup
+        @Name(name = "group")
+        public InnerGroup group(int value) {
+            return null;
+        }
+    }
+}
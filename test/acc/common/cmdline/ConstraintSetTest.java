@@ -0,0 +1,134 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.annotation.AtLeastOne;
+import acc.common.cmdline.annotation.ExactlyOne;
+import acc.common.cmdline.annotation.Exclusive;
+import acc.common.cmdline.annotation.Name;
+import acc.common.cmdline.annotation.Requires;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the rules constraining which options may be specified together.
+ */
+public class ConstraintSetTest {
+    /**
+     * Parser of the commands.
+     */
+    private CmdParser _parser;
+
+    /**
+     * Creates the parser for each test.
+     * @throws Exception Thrown when the definition of command line is invalid
+     */
+    @Before
+    public void setUp() throws Exception {
+        this._parser = new CmdParser(new Commands());
+    }
+
+    @Test
+    public void exclusive() throws Exception {
+        this._parser.dispatch(new String[] { "export" });
+        this._parser.dispatch(new String[] { "export", "--json=true" });
+        this._parser.dispatch(new String[] { "export", "--xml=true", "--output=file" });
+        assertViolation("format", "export", "--json=true", "--xml=true");
+    }
+
+    @Test
+    public void requires() throws Exception {
+        this._parser.dispatch(new String[] { "export", "--user=admin", "--password=secret" });
+        this._parser.dispatch(new String[] { "export", "--password=secret" });
+        assertViolation("user", "export", "--user=admin");
+    }
+
+    @Test
+    public void atLeastOne() throws Exception {
+        this._parser.dispatch(new String[] { "notify", "--email=a@b.c" });
+        this._parser.dispatch(new String[] { "notify", "--email=a@b.c", "--sms=123" });
+        assertViolation("target", "notify");
+    }
+
+    @Test
+    public void exactlyOne() throws Exception {
+        this._parser.dispatch(new String[] { "connect", "--host=localhost" });
+        this._parser.dispatch(new String[] { "connect", "--socket=/tmp/socket" });
+        assertViolation("address", "connect");
+        assertViolation("address", "connect", "--host=localhost", "--socket=/tmp/socket");
+    }
+
+    @Test
+    public void rulesAreCheckedBeforeTheCommand() throws Exception {
+        ParsedCommand command = this._parser.parse(new String[] { "export", "--json=true" });
+        assertEquals("export", command.getCommandName());
+        try {
+            this._parser.parse(new String[] { "export", "--json=true", "--xml=true" });
+            fail("Exclusive options were parsed");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_CONSTRAINT_VIOLATION, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void requiredOptionMustBeDefined() {
+        try {
+            new CmdParser(new InvalidRequires());
+            fail("Unknown required option was accepted");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.PARSE_INVALID_CONSTRAINT, e.getErrorCode());
+            assertEquals("missing", e.getInvalidArgument());
+        }
+    }
+
+    /**
+     * Checks that the dispatch fails with a violated rule.
+     * @param name Expected name of the group or of the option reported as the invalid argument
+     * @param args Command line arguments
+     */
+    private void assertViolation(String name, String... args) {
+        try {
+            this._parser.dispatch(args);
+            fail("Rule " + name + " was not checked");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_CONSTRAINT_VIOLATION, e.getErrorCode());
+            assertEquals(name, e.getInvalidArgument());
+        }
+    }
+
+    /**
+     * Command line with constrained options.
+     */
+    public static class Commands {
+        @Name(name = "export")
+        public void export(
+                @Name(name = "json") @Exclusive("format") boolean json,
+                @Name(name = "xml") @Exclusive("format") boolean xml,
+                @Name(name = "output") String output,
+                @Name(name = "user") @Requires("password") String user,
+                @Name(name = "password") String password) {
+        }
+
+        @Name(name = "notify")
+        public void notify(
+                @Name(name = "email") @AtLeastOne("target") String email,
+                @Name(name = "sms") @AtLeastOne("target") String sms) {
+        }
+
+        @Name(name = "connect")
+        public void connect(
+                @Name(name = "host") @ExactlyOne("address") String host,
+                @Name(name = "socket") @ExactlyOne("address") String socket) {
+        }
+    }
+
+    /**
+     * Command line requiring an option, which is not defined.
+     */
+    public static class InvalidRequires {
+        @Name(name = "run")
+        public void run(@Name(name = "value") @Requires("missing") String value) {
+        }
+    }
+}
@@ -0,0 +1,176 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.annotation.MaxConcurrency;
+import acc.common.cmdline.annotation.Name;
+import acc.common.cmdline.annotation.Timeout;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the deadlines, the cancellation and the concurrency limits of commands.
+ */
+public class DeadlineTest {
+    /**
+     * Object receiving the commands.
+     */
+    private Commands _impl;
+
+    /**
+     * Parser of the commands.
+     */
+    private CmdParser _parser;
+
+    /**
+     * Creates the parser for each test, so the tests don't share the latches.
+     * @throws Exception Thrown when the definition of command line is invalid
+     */
+    @Before
+    public void setUp() throws Exception {
+        this._impl = new Commands();
+        this._parser = new CmdParser(this._impl);
+    }
+
+    @Test(timeout = 10000)
+    public void deadlineOfAnnotation() throws Exception {
+        long start = System.nanoTime();
+        DispatchResult result = this._parser.tryDispatch(new String[] { "block" });
+        assertEquals(CmdExceptionCode.DISPATCH_TIMEOUT, result.getErrorCode());
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 100);
+        assertTrue("Command was interrupted", this._impl.Interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test(timeout = 10000)
+    public void deadlineOfOptions() throws Exception {
+        DispatchResult result = this._parser.tryDispatch(new String[] { "wait" }, new DispatchOptions().setTimeout(50));
+        assertEquals(CmdExceptionCode.DISPATCH_TIMEOUT, result.getErrorCode());
+        assertEquals("wait", result.getInvalidArgument());
+
+        this._impl.Release.countDown();
+        result = this._parser.tryDispatch(new String[] { "wait" }, new DispatchOptions().setTimeout(5000).setCaptureOutput(true));
+        assertTrue(result.getMessage(), result.isSuccess());
+        assertEquals("done", result.getOutput());
+    }
+
+    @Test(timeout = 10000)
+    public void outputAfterDeadlineIsDiscarded() throws Exception {
+        ParsedCommand command = this._parser.parse(new String[] { "write" });
+        CommandOutput output = new CommandOutput();
+        try {
+            this._parser.execute(command, this._impl, new DispatchOptions().setTimeout(100), output);
+            fail("Deadline did not expire");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_TIMEOUT, e.getErrorCode());
+        }
+        this._impl.Release.countDown();
+        assertTrue(this._impl.Completed.await(5, TimeUnit.SECONDS));
+        assertEquals("before", output.getText());
+    }
+
+    @Test(timeout = 10000)
+    public void concurrencyLimit() throws Exception {
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                _parser.tryDispatch(new String[] { "single" });
+            }
+        });
+        thread.start();
+        assertTrue(this._impl.Started.await(5, TimeUnit.SECONDS));
+
+        DispatchResult result = this._parser.tryDispatch(new String[] { "single" });
+        assertEquals(CmdExceptionCode.DISPATCH_REJECTED, result.getErrorCode());
+
+        this._impl.Release.countDown();
+        thread.join();
+        assertTrue(this._parser.tryDispatch(new String[] { "single" }).isSuccess());
+    }
+
+    @Test(timeout = 10000)
+    public void parsedCommandRespectsDeadline() throws Exception {
+        ParsedCommand command = this._parser.parse(new String[] { "block" });
+        try {
+            command.execute(this._impl, new CommandOutput());
+            fail("Deadline did not expire");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_TIMEOUT, e.getErrorCode());
+        }
+    }
+
+    /**
+     * Waits for the latch ignoring interruptions, like a command not responding to the cancellation.
+     * @param latch Latch to wait for
+     */
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        while (true) {
+            try {
+                latch.await();
+                return;
+            } catch (InterruptedException e) {
+                // Cancellation is ignored
+            }
+        }
+    }
+
+    /**
+     * Command line with commands waiting for the test.
+     */
+    public static class Commands {
+        /**
+         * Released by the test to let the commands complete.
+         */
+        final CountDownLatch Release = new CountDownLatch(1);
+
+        /**
+         * Released when a command starts.
+         */
+        final CountDownLatch Started = new CountDownLatch(1);
+
+        /**
+         * Released when a command completes.
+         */
+        final CountDownLatch Completed = new CountDownLatch(1);
+
+        /**
+         * Released when a command is interrupted.
+         */
+        final CountDownLatch Interrupted = new CountDownLatch(1);
+
+        @Timeout(100)
+        @Name(name = "block")
+        public void block() {
+            try {
+                Thread.sleep(60000);
+            } catch (InterruptedException e) {
+                this.Interrupted.countDown();
+            }
+        }
+
+        @Name(name = "wait")
+        public void waitForRelease(CommandOutput output) throws InterruptedException {
+            this.Release.await();
+            output.print("done");
+        }
+
+        @Name(name = "write")
+        public void write(CommandOutput output) {
+            output.print("before");
+            awaitUninterruptibly(this.Release);
+            output.print(" after");
+            this.Completed.countDown();
+        }
+
+        @MaxConcurrency(1)
+        @Name(name = "single")
+        public void single() throws InterruptedException {
+            this.Started.countDown();
+            this.Release.await();
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.samples.CommandLineImpl;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Regression tests of the allocations and the throughput of the dispatch. A corpus of realistic and randomized
+ * command lines is dispatched against {@link CommandLineImpl}, the average number of bytes allocated per call
+ * and the number of calls per second are compared with the budgets in dispatch-budgets.properties.
+ * A budget should be raised only together with the change that justifies it.
+ */
+public class DispatchBudgetTest {
+    /**
+     * Number of calls before the measurement starts (so the measured code is compiled).
+     */
+    private static final int WarmupCalls = 20000;
+
+    /**
+     * Number of measured calls.
+     */
+    private static final int MeasuredCalls = 20000;
+
+    /**
+     * Number of randomized command lines in the corpus.
+     */
+    private static final int RandomLines = 200;
+
+    /**
+     * Budgets loaded from dispatch-budgets.properties.
+     */
+    private static Properties _budgets;
+
+    /**
+     * Parser dispatching the command lines of the corpus.
+     */
+    private static CmdParser _parser;
+
+    /**
+     * Options of the dispatch, the output of the commands is discarded.
+     */
+    private static DispatchOptions _options;
+
+    /**
+     * Loads the budgets and creates the parser shared by the tests.
+     * @throws Exception Thrown when the budgets could not be loaded or the definition of command line is invalid
+     */
+    @BeforeClass
+    public static void setUp() throws Exception {
+        _budgets = new Properties();
+        InputStream input = DispatchBudgetTest.class.getResourceAsStream("dispatch-budgets.properties");
+        try {
+            _budgets.load(input);
+        } finally {
+            input.close();
+        }
+
+        _parser = new CmdParser(new CommandLineImpl());
+        _options = new DispatchOptions().setOutput(new PrintStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+            }
+        }));
+    }
+
+    @Test
+    public void parseSimpleCommand() throws Exception {
+        assertAllocations("parse.simple", new String[][] { { "simple" }, { "-g=value", "s" } }, false);
+    }
+
+    @Test
+    public void parseCommandWithOptions() throws Exception {
+        assertAllocations("parse.options", new String[][] {
+            { "complex", "--param1=20", "--param2=a1" },
+            { "c", "-p1:50", "-p2=a123", "-p3=false" },
+            { "unnamed", "-p1=15", "a7", "false" }
+        }, false);
+    }
+
+    @Test
+    public void parseArrayCommand() throws Exception {
+        StringBuilder values = new StringBuilder("--param1=10");
+        for (int i = 11; i <= 100; i++) {
+            values.append(',').append(i);
+        }
+        assertAllocations("parse.array", new String[][] { { "array", values.toString() } }, false);
+    }
+
+    @Test
+    public void dispatchCorpus() throws Exception {
+        assertAllocations("dispatch.corpus", createCorpus(), true);
+    }
+
+    @Test
+    public void dispatchThroughput() throws Exception {
+        String[][] corpus = createCorpus();
+        for (int i = 0; i < WarmupCalls; i++) {
+            _parser.dispatch(corpus[i % corpus.length], _options);
+        }
+
+        long start = System.nanoTime();
+        for (int i = 0; i < MeasuredCalls; i++) {
+            _parser.dispatch(corpus[i % corpus.length], _options);
+        }
+        long callsPerSecond = MeasuredCalls * 1000000000L / Math.max(1, System.nanoTime() - start);
+
+        long budget = getBudget("dispatch.corpus.callsPerSecond");
+        assertTrue("Throughput " + callsPerSecond + " calls/s is below the budget " + budget, callsPerSecond >= budget);
+    }
+
+    /**
+     * Creates the corpus of command lines: the realistic ones and randomized variants of them
+     * (short and long names, both separators and prefixes, values within the validated ranges).
+     * @return Command lines
+     */
+    private static String[][] createCorpus() {
+        List<String[]> corpus = new ArrayList<String[]>();
+        corpus.add(new String[] { "simple" });
+        corpus.add(new String[] { "--global=value", "simple" });
+        corpus.add(new String[] { "complex", "--param1=20", "--param2=a1" });
+        corpus.add(new String[] { "array", "--param1=10,20,30" });
+        corpus.add(new String[] { "ua", "10,20,30" });
+        corpus.add(new String[] { "unnamed", "-p1=15", "a7", "false" });
+        corpus.add(new String[] { "db", "migrate", "--to=5" });
+        corpus.add(new String[] { "db", "-v=true", "status" });
+
+        Random random = new Random(28);
+        for (int i = 0; i < RandomLines; i++) {
+            String prefix = random.nextBoolean() ? "--" : "-";
+            char separator = random.nextBoolean() ? '=' : ':';
+            boolean shortNames = random.nextBoolean();
+            List<String> line = new ArrayList<String>();
+            if (random.nextInt(4) == 0) {
+                line.add(prefix + (shortNames ? "g" : "global") + separator + "v" + random.nextInt(1000));
+            }
+            line.add(shortNames ? "c" : "complex");
+            line.add(prefix + (shortNames ? "p1" : "param1") + separator + (10 + random.nextInt(91)));
+            line.add(prefix + (shortNames ? "p2" : "param2") + separator + "a" + random.nextInt(100000));
+            if (random.nextBoolean()) {
+                line.add(prefix + (shortNames ? "p3" : "param3") + separator + random.nextBoolean());
+            }
+            corpus.add(line.toArray(new String[line.size()]));
+        }
+        return corpus.toArray(new String[corpus.size()][]);
+    }
+
+    /**
+     * Measures the average number of bytes allocated per call and compares it with the budget.
+     * @param name Name of the budget (without the ".bytes" suffix)
+     * @param lines Command lines, used in turn
+     * @param dispatch True if the commands are dispatched, false if they are only parsed
+     * @throws Exception Thrown when a command line is not valid
+     */
+    private static void assertAllocations(String name, String[][] lines, boolean dispatch) throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean allocationBean = (com.sun.management.ThreadMXBean)bean;
+        Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+        allocationBean.setThreadAllocatedMemoryEnabled(true);
+
+        for (int i = 0; i < WarmupCalls; i++) {
+            call(lines[i % lines.length], dispatch);
+        }
+
+        long threadId = Thread.currentThread().getId();
+        long start = allocationBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < MeasuredCalls; i++) {
+            call(lines[i % lines.length], dispatch);
+        }
+        long bytesPerCall = (allocationBean.getThreadAllocatedBytes(threadId) - start) / MeasuredCalls;
+
+        long budget = getBudget(name + ".bytes");
+        assertTrue("Allocated " + bytesPerCall + " bytes per call, the budget is " + budget, bytesPerCall <= budget);
+    }
+
+    /**
+     * Parses or dispatches a command line.
+     * @param args Command line
+     * @param dispatch True if the command is dispatched, false if it is only parsed
+     * @throws Exception Thrown when the command line is not valid
+     */
+    private static void call(String[] args, boolean dispatch) throws Exception {
+        if (dispatch) {
+            _parser.dispatch(args, _options);
+        }
+        else {
+            _parser.parse(args);
+        }
+    }
+
+    /**
+     * Returns a budget.
+     * @param name Name of the budget
+     * @return Value of the budget
+     */
+    private static long getBudget(String name) {
+        String value = _budgets.getProperty(name);
+        if (value == null) {
+            throw new IllegalStateException("Budget " + name + " is not defined");
+        }
+        return Long.parseLong(value.trim());
+    }
+}
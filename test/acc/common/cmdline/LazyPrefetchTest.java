@@ -0,0 +1,187 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.annotation.DefaultValue;
+import acc.common.cmdline.annotation.LongRange;
+import acc.common.cmdline.annotation.Name;
+import acc.common.cmdline.annotation.Prefetch;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of lazily converted parameter values and of prefetched file parameters.
+ */
+public class LazyPrefetchTest {
+    /**
+     * Object receiving the commands.
+     */
+    private Commands _impl;
+
+    /**
+     * Parser of the commands.
+     */
+    private CmdParser _parser;
+
+    /**
+     * File read by the prefetched parameters.
+     */
+    private File _file;
+
+    /**
+     * Creates the parser and the file for each test.
+     * @throws Exception Thrown when the definition of command line is invalid or the file could not be written
+     */
+    @Before
+    public void setUp() throws Exception {
+        this._impl = new Commands();
+        this._parser = new CmdParser(this._impl);
+        this._file = File.createTempFile("prefetch", ".txt");
+        OutputStream output = new FileOutputStream(this._file);
+        try {
+            output.write("content".getBytes("UTF-8"));
+        } finally {
+            output.close();
+        }
+    }
+
+    /**
+     * Deletes the file.
+     */
+    @After
+    public void tearDown() {
+        this._file.delete();
+    }
+
+    @Test
+    public void unusedLazyValueIsNotConverted() throws Exception {
+        this._parser.dispatch(new String[] { "lazy", "--count=invalid", "--use=false" });
+        assertEquals(Arrays.asList("unused"), this._impl.Calls);
+    }
+
+    @Test
+    public void lazyValueIsConvertedAndValidatedWhenUsed() throws Exception {
+        this._parser.dispatch(new String[] { "lazy", "--count=7" });
+        this._parser.dispatch(new String[] { "lazy" });
+        assertEquals(Arrays.asList("7", "3"), this._impl.Calls);
+
+        assertDispatchError(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, "lazy", "--count=invalid");
+        assertDispatchError(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, "lazy", "--count=1000");
+    }
+
+    @Test
+    public void lazyValueIsConvertedOnce() throws Exception {
+        ParsedCommand command = this._parser.parse(new String[] { "lazy", "--count=5" });
+        Lazy<?> value = (Lazy<?>)command.getArguments()[0];
+        assertFalse(value.isEvaluated());
+        assertEquals(5, value.get());
+        assertTrue(value.isEvaluated());
+    }
+
+    @Test
+    public void prefetchedBuffer() throws Exception {
+        ParsedCommand command = this._parser.parse(new String[] { "buffer", "--file=" + this._file.getPath() });
+        command.execute(this._impl, new CommandOutput());
+        command.execute(this._impl, new CommandOutput());
+        assertEquals(Arrays.asList("content", "content"), this._impl.Calls);
+    }
+
+    @Test
+    public void prefetchedFuture() throws Exception {
+        ParsedCommand command = this._parser.parse(new String[] { "future", "--file=" + this._file.getPath() });
+        command.execute(this._impl, new CommandOutput());
+        command.execute(this._impl, new CommandOutput());
+        assertEquals(Arrays.asList("content", "content"), this._impl.Calls);
+    }
+
+    @Test
+    public void missingPrefetchedFile() throws Exception {
+        String path = new File(this._file.getPath() + ".missing").getPath();
+        assertDispatchError(CmdExceptionCode.DISPATCH_IO_ERROR, "buffer", "--file=" + path);
+    }
+
+    @Test
+    public void invalidPrefetchParameter() {
+        try {
+            new CmdParser(new InvalidPrefetch());
+            fail("Prefetched String parameter was accepted");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.PARSE_UNSUPPORTED_PARAMETER_TYPE, e.getErrorCode());
+        }
+    }
+
+    /**
+     * Checks that the dispatch fails with the expected error code.
+     * @param code Expected error code
+     * @param args Command line arguments
+     */
+    private void assertDispatchError(CmdExceptionCode code, String... args) {
+        try {
+            this._parser.dispatch(args);
+            fail("Command line " + Arrays.toString(args) + " was dispatched");
+        } catch (CmdException e) {
+            assertEquals(code, e.getErrorCode());
+        }
+    }
+
+    /**
+     * Reads the remaining content of the buffer, so a shared buffer would be empty for the next execution.
+     * @param buffer Buffer to read
+     * @return Content of the buffer
+     * @throws Exception Thrown when the content is not valid UTF-8
+     */
+    private static String read(MappedByteBuffer buffer) throws Exception {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    /**
+     * Command line with lazy and prefetched parameters.
+     */
+    public static class Commands {
+        /**
+         * Recorded calls with the received values.
+         */
+        final List<String> Calls = new ArrayList<String>();
+
+        @Name(name = "lazy")
+        public void lazy(
+                @Name(name = "count") @DefaultValue("3") @LongRange(min = 1, max = 100) Lazy<Integer> count,
+                @Name(name = "use") @DefaultValue("true") boolean use) throws CmdException {
+            this.Calls.add(use ? String.valueOf(count.get()) : "unused");
+        }
+
+        @Name(name = "buffer")
+        public void buffer(@Name(name = "file") @Prefetch MappedByteBuffer file) throws Exception {
+            this.Calls.add(read(file));
+        }
+
+        @Name(name = "future")
+        public void future(@Name(name = "file") @Prefetch Future<MappedByteBuffer> file) throws Exception {
+            this.Calls.add(read(file.get()));
+        }
+    }
+
+    /**
+     * Command line with an invalid prefetched parameter.
+     */
+    public static class InvalidPrefetch {
+        @Name(name = "invalid")
+        public void invalid(@Name(name = "file") @Prefetch String file) {
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.annotation.Name;
+import acc.common.cmdline.annotation.OneOf;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of the validation of allowed values.
+ */
+public class OneOfValidatorTest {
+    @Test
+    public void caseSensitiveMatching() {
+        OneOfValidator validator = new OneOfValidator(new String[] { "red", "green", "red" }, false);
+        assertEquals(Arrays.asList("green", "red"), validator.getValues());
+        assertNull(validator.validateValue("red"));
+        assertNotNull(validator.validateValue("Red"));
+        assertNotNull(validator.validateValue(null));
+    }
+
+    @Test
+    public void caseInsensitiveMatching() throws Exception {
+        Commands impl = new Commands();
+        CmdParser parser = new CmdParser(impl);
+        parser.dispatch(new String[] { "mode", "--mode=FAST" });
+        parser.dispatch(new String[] { "mode", "--mode=Slow" });
+        assertEquals(" FAST Slow", impl.Calls);
+
+        try {
+            parser.dispatch(new String[] { "mode", "--mode=medium" });
+            fail("Value was accepted");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void valuesLoadedFromResource() throws Exception {
+        OneOfValidator validator = OneOfValidator.load(OneOfValidatorTest.class, "colors.txt", false);
+        assertEquals(Arrays.asList("blue", "green", "red"), validator.getValues());
+        assertEquals("colors.txt", validator.getResource());
+
+        Commands impl = new Commands();
+        CmdParser parser = new CmdParser(impl);
+        parser.dispatch(new String[] { "paint", "--color=green" });
+        assertEquals(" green", impl.Calls);
+        try {
+            parser.dispatch(new String[] { "paint", "--color=# Colors accepted by the paint command" });
+            fail("Comment was accepted");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void missingResource() {
+        try {
+            new CmdParser(new MissingResource());
+            fail("Missing resource was accepted");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.PARSE_INVALID_VALIDATOR, e.getErrorCode());
+            assertEquals("missing.txt", e.getInvalidArgument());
+        }
+    }
+
+    @Test
+    public void resourceValidatorsAreNotSharedWithInlineValidators() throws Exception {
+        OneOfValidator inline = new OneOfValidator(new String[] { "red", "green", "blue" }, false);
+        OneOfValidator loaded = OneOfValidator.load(OneOfValidatorTest.class, "colors.txt", false);
+        OneOfValidator reloaded = OneOfValidator.load(OneOfValidatorTest.class, "colors.txt", false);
+        OneOfValidator otherOwner = OneOfValidator.load(Commands.class, "/acc/common/cmdline/colors.txt", false);
+
+        assertFalse(inline.equals(loaded));
+        assertFalse(loaded.equals(inline));
+        assertFalse(loaded.equals(otherOwner));
+        assertEquals(loaded, reloaded);
+        assertEquals(loaded.hashCode(), reloaded.hashCode());
+        assertEquals(inline, new OneOfValidator(new String[] { "blue", "red", "green" }, false));
+        assertFalse(inline.equals(new OneOfValidator(new String[] { "red", "green", "blue" }, true)));
+    }
+
+    /**
+     * Command line with parameters of allowed values.
+     */
+    public static class Commands {
+        /**
+         * Received values separated by spaces.
+         */
+        String Calls = "";
+
+        @Name(name = "mode")
+        public void mode(@Name(name = "mode") @OneOf(value = { "fast", "slow" }, ignoreCase = true) String mode) {
+            this.Calls += " " + mode;
+        }
+
+        @Name(name = "paint")
+        public void paint(@Name(name = "color") @OneOf(resource = "colors.txt") String color) {
+            this.Calls += " " + color;
+        }
+    }
+
+    /**
+     * Command line with allowed values in a missing resource.
+     */
+    public static class MissingResource {
+        @Name(name = "paint")
+        public void paint(@Name(name = "color") @OneOf(resource = "missing.txt") String color) {
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package acc.common.cmdline;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Property-based tests of the option and value parsing fast paths. Random strings built from the characters
+ * with special meaning are parsed and compared with straightforward reference implementations.
+ */
+public class ParseOptionFuzzTest {
+    /**
+     * Characters the random strings are built from (separators, prefixes, letters of both cases and a space).
+     */
+    private static final char[] Alphabet = { '-', '-', '=', ':', ',', 'a', 'B', 'c', '1', ' ' };
+
+    /**
+     * Number of random strings checked by each test.
+     */
+    private static final int Iterations = 200000;
+
+    @Test
+    public void parseOptionMatchesReference() {
+        Random random = new Random(28);
+        for (int i = 0; i < Iterations; i++) {
+            String option = randomString(random, 8);
+            String[] expected = referenceParseOption(option);
+            CmdParser.Option result = CmdParser.parseOption(option);
+            assertEquals("Name of '" + option + "'", expected[0], result.Name);
+            assertEquals("Value of '" + option + "'", expected[1], result.Value);
+        }
+    }
+
+    @Test
+    public void parseOptionEdgeCases() {
+        assertOption("--name=value", "name", "value");
+        assertOption("-Name:value", "name", "value");
+        assertOption("name=", "name", "");
+        assertOption("--name:", "name", "");
+        assertOption("--name", "name", null);
+        assertOption("--", "", null);
+        assertOption("-", "", null);
+        assertOption("", "", null);
+        assertOption("--=value", "=value", null);
+        assertOption("--=a:b", "=a", "b");
+        assertOption("--:value", ":value", null);
+        assertOption("--a=b=c", "a", "b=c");
+        assertOption("--a:b=c", "a:b", "c");
+        assertOption("---name=x", "-name", "x");
+    }
+
+    @Test
+    public void splitValuesMatchesStringSplit() {
+        Random random = new Random(280);
+        for (int i = 0; i < Iterations; i++) {
+            String value = randomString(random, 10);
+            assertArrayEquals("Elements of '" + value + "'", value.split(","), CmdParser.splitValues(value));
+        }
+    }
+
+    @Test
+    public void splitValuesEdgeCases() {
+        for (String value : Arrays.asList("", ",", ",,", "a", "a,", "a,,", ",a", ",,a", "a,b", "a,,b", " , ")) {
+            assertArrayEquals("Elements of '" + value + "'", value.split(","), CmdParser.splitValues(value));
+        }
+    }
+
+    /**
+     * Checks the result of parsing an option.
+     * @param option Command line option
+     * @param name Expected name
+     * @param value Expected value
+     */
+    private static void assertOption(String option, String name, String value) {
+        CmdParser.Option result = CmdParser.parseOption(option);
+        assertEquals("Name of '" + option + "'", name, result.Name);
+        assertEquals("Value of '" + option + "'", value, result.Value);
+    }
+
+    /**
+     * Creates a random string from the characters of the alphabet.
+     * @param random Random generator
+     * @param maxLength Maximal length of the string
+     * @return Random string
+     */
+    private static String randomString(Random random, int maxLength) {
+        char[] chars = new char[random.nextInt(maxLength + 1)];
+        for (int i = 0; i < chars.length; i++) {
+            chars[i] = Alphabet[random.nextInt(Alphabet.length)];
+        }
+        return new String(chars);
+    }
+
+    /**
+     * Parses an option the straightforward way (the prefix is removed and the rest is split on the first separator).
+     * @param option Command line option
+     * @return Name and value of the option (value is null when there is no separator)
+     */
+    private static String[] referenceParseOption(String option) {
+        if (option.startsWith("--")) {
+            option = option.substring(2);
+        }
+        else if (option.startsWith("-")) {
+            option = option.substring(1);
+        }
+
+        int separatorIndex = option.indexOf('=');
+        if (separatorIndex <= 0) {
+            separatorIndex = option.indexOf(':');
+        }
+        if (separatorIndex > 0) {
+            return new String[] { option.substring(0, separatorIndex).toLowerCase(), option.substring(separatorIndex + 1) };
+        }
+        return new String[] { option.toLowerCase(), null };
+    }
+}
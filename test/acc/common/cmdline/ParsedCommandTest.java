@@ -0,0 +1,128 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.annotation.Name;
+import acc.common.cmdline.collections.IntList;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests of commands parsed once and executed later, possibly several times.
+ */
+public class ParsedCommandTest {
+    /**
+     * Object receiving the commands.
+     */
+    private Commands _impl;
+
+    /**
+     * Parser of the commands.
+     */
+    private CmdParser _parser;
+
+    /**
+     * Creates the parser for each test, so the tests don't share the recorded calls.
+     * @throws Exception Thrown when the definition of command line is invalid
+     */
+    @Before
+    public void setUp() throws Exception {
+        this._impl = new Commands();
+        this._parser = new CmdParser(this._impl);
+    }
+
+    @Test
+    public void executeLater() throws Exception {
+        ParsedCommand command = this._parser.parse(new String[] { "--prefix=x", "values", "--array=1,2,3", "--list=4,5" });
+        assertEquals("values", command.getCommandName());
+        assertEquals(0, this._impl.Calls.size());
+
+        CommandOutput output = new CommandOutput();
+        command.execute(this._impl, output);
+        assertEquals("x:[1, 2, 3]:[4, 5]:{}", this._impl.Calls.get(0));
+        assertEquals("x", this._impl.Prefix);
+    }
+
+    @Test
+    public void commandChangingArgumentsDoesNotChangeLaterExecutions() throws Exception {
+        ParsedCommand command = this._parser.parse(new String[] { "mutate", "--array=1,2", "--list=3", "--ints=4", "--map=a=1" });
+        CommandOutput output = new CommandOutput();
+        command.execute(this._impl, output);
+        command.execute(this._impl, output);
+        assertEquals(this._impl.Calls.get(0), this._impl.Calls.get(1));
+        assertEquals("[1, 2]:[3]:[4]:{a=1}", this._impl.Calls.get(0));
+    }
+
+    @Test
+    public void changingReturnedArgumentsDoesNotChangeCommand() throws Exception {
+        ParsedCommand command = this._parser.parse(new String[] { "values", "--array=1,2", "--list=3" });
+        Object[] arguments = command.getArguments();
+        ((int[])arguments[0])[0] = 100;
+        ((List<?>)arguments[1]).clear();
+        arguments[2] = null;
+
+        Object[] again = command.getArguments();
+        assertArrayEquals(new int[] { 1, 2 }, (int[])again[0]);
+        assertEquals(1, ((List<?>)again[1]).size());
+        assertEquals(new TreeMap<String, Integer>(), again[2]);
+    }
+
+    @Test
+    public void executeOnAnotherThread() throws Exception {
+        final ParsedCommand command = this._parser.parse(new String[] { "values", "--list=7" });
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    command.execute(_impl, new CommandOutput());
+                } catch (CmdException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        thread.start();
+        thread.join();
+        assertEquals("null:[]:[7]:{}", this._impl.Calls.get(0));
+    }
+
+    /**
+     * Command line changing the values it receives.
+     */
+    public static class Commands {
+        /**
+         * Global parameter.
+         */
+        @Name(name = "prefix")
+        public String Prefix;
+
+        /**
+         * Recorded calls with the received values.
+         */
+        List<String> Calls = new ArrayList<String>();
+
+        public void values(
+                @Name(name = "array") int[] array,
+                @Name(name = "list") ArrayList<String> list,
+                @Name(name = "map") TreeMap<String, Integer> map) {
+            this.Calls.add(this.Prefix + ":" + java.util.Arrays.toString(array) + ":" + list + ":" + map);
+        }
+
+        public void mutate(
+                @Name(name = "array") int[] array,
+                @Name(name = "list") List<String> list,
+                @Name(name = "ints") IntList ints,
+                @Name(name = "map") Map<String, Integer> map) {
+            this.Calls.add(java.util.Arrays.toString(array) + ":" + list + ":" + ints + ":" + map);
+            array[0] = -1;
+            list.add("changed");
+            ints.addInt(-1);
+            map.put("changed", -1);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.annotation.Name;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of pipelines of commands separated by ";;".
+ */
+public class PipelineTest {
+    @Test
+    public void segmentsRunInOrder() throws Exception {
+        Recorder recorder = new Recorder();
+        CmdParser parser = new CmdParser(recorder);
+        parser.dispatchPipeline(new String[] { "--tag=a", "record", ";;", "record", "--value=2", ";;", ";;", "--tag=c", "record" }, quiet());
+        assertEquals(Arrays.asList("a:0", "null:2", "c:0"), recorder.Calls);
+    }
+
+    @Test
+    public void allSegmentsAreParsedFirst() throws Exception {
+        Recorder recorder = new Recorder();
+        CmdParser parser = new CmdParser(recorder);
+        try {
+            parser.dispatchPipeline(new String[] { "record", ";;", "record", "--value=x" }, quiet());
+            fail("Invalid segment was accepted");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, e.getErrorCode());
+        }
+        assertEquals(Collections.<String>emptyList(), recorder.Calls);
+    }
+
+    @Test
+    public void failureStopsPipeline() throws Exception {
+        Recorder recorder = new Recorder();
+        CmdParser parser = new CmdParser(recorder);
+        try {
+            parser.dispatchPipeline(new String[] { "record", ";;", "fail", ";;", "record", "--value=3" }, quiet());
+            fail("Failure was not reported");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, e.getErrorCode());
+        }
+        assertEquals(Arrays.asList("null:0"), recorder.Calls);
+    }
+
+    @Test(timeout = 10000)
+    public void parallelSegmentsWithDifferentGlobals() throws Exception {
+        Recorder recorder = new Recorder();
+        CmdParser parser = new CmdParser(recorder);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DispatchOptions options = new DispatchOptions().setParallel(true).setOutput(new PrintStream(bytes, true, "UTF-8"));
+        for (int i = 0; i < 20; i++) {
+            parser.dispatchPipeline(new String[] { "--tag=a", "slow", ";;", "--tag=b", "slow", ";;", "--tag=c", "slow" }, options);
+        }
+
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            expected.append("a=a b=b c=c ");
+        }
+        assertEquals(expected.toString(), bytes.toString("UTF-8"));
+    }
+
+    @Test(timeout = 10000)
+    public void parallelSegmentsWithoutGlobalsRunConcurrently() throws Exception {
+        Meeting meeting = new Meeting();
+        CmdParser parser = new CmdParser(meeting);
+        parser.dispatchPipeline(new String[] { "meet", ";;", "meet" }, new DispatchOptions().setParallel(true));
+        assertEquals(2, meeting.Barrier.getParties());
+        assertEquals(0, meeting.Barrier.getNumberWaiting());
+    }
+
+    @Test
+    public void parallelFailureIsReported() throws Exception {
+        Recorder recorder = new Recorder();
+        CmdParser parser = new CmdParser(recorder);
+        try {
+            parser.dispatchPipeline(new String[] { "fail", ";;", "record" }, quiet().setParallel(true));
+            fail("Failure was not reported");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, e.getErrorCode());
+        }
+        assertEquals(Arrays.asList("null:0"), recorder.Calls);
+    }
+
+    /**
+     * Creates options discarding the output.
+     * @return Options of the dispatch
+     */
+    private static DispatchOptions quiet() {
+        return new DispatchOptions().setOutput(new PrintStream(new ByteArrayOutputStream()));
+    }
+
+    /**
+     * Command line recording the calls of its commands.
+     */
+    public static class Recorder {
+        /**
+         * Global parameter.
+         */
+        @Name(name = "tag")
+        public String Tag;
+
+        /**
+         * Recorded calls with the received values.
+         */
+        final List<String> Calls = Collections.synchronizedList(new ArrayList<String>());
+
+        @Name(name = "record")
+        public void record(@Name(name = "value") int value) {
+            this.Calls.add(this.Tag + ":" + value);
+        }
+
+        @Name(name = "slow")
+        public void slow(CommandOutput output) throws InterruptedException {
+            String tag = this.Tag;
+            Thread.sleep(5);
+            output.print(tag + "=" + this.Tag + " ");
+        }
+
+        @Name(name = "fail")
+        public void fail() throws CmdException {
+            throw new CmdException(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, "fail", "Command failed");
+        }
+    }
+
+    /**
+     * Command line without global parameters, whose commands wait for each other.
+     */
+    public static class Meeting {
+        /**
+         * Barrier passed only if both commands run at the same time.
+         */
+        final CyclicBarrier Barrier = new CyclicBarrier(2);
+
+        @Name(name = "meet")
+        public void meet() throws Exception {
+            this.Barrier.await(5, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.annotation.Name;
+import acc.common.cmdline.samples.CommandLineImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests of command templates with slots bound separately for each invocation.
+ */
+public class PreparedCommandTest {
+    /**
+     * Object receiving the commands.
+     */
+    private CommandLineImpl _impl;
+
+    /**
+     * Parser of the commands.
+     */
+    private CmdParser _parser;
+
+    /**
+     * Creates the parser for each test.
+     * @throws Exception Thrown when the definition of command line is invalid
+     */
+    @Before
+    public void setUp() throws Exception {
+        this._impl = new CommandLineImpl();
+        this._parser = new CmdParser(this._impl);
+    }
+
+    @Test
+    public void bindSlots() throws Exception {
+        PreparedCommand prepared = this._parser.prepare(new String[] { "complex", "--param1=?", "--param2=?", "--param3=false" });
+        assertEquals(2, prepared.getSlotCount());
+
+        assertEquals("Complex Command: 20, a1, false", this.execute(prepared.bind("20", "a1")));
+        assertEquals("Complex Command: 30, a2, false", this.execute(prepared.bind("30", "a2")));
+    }
+
+    @Test
+    public void bindTypedValues() throws Exception {
+        PreparedCommand prepared = this._parser.prepare(new String[] { "complex", "--param1=?", "--param2=?" });
+        ParsedCommand command = prepared.setInt(0, 40).setString(1, "a3").toParsedCommand();
+        assertEquals("Complex Command: 40, a3, true", this.execute(command));
+    }
+
+    @Test
+    public void bindGlobalSlot() throws Exception {
+        PreparedCommand prepared = this._parser.prepare(new String[] { "--global=?", "simple" });
+        assertEquals(1, prepared.getSlotCount());
+        CommandOutput output = new CommandOutput();
+        prepared.bind("g1").execute(this._impl, output);
+        assertEquals("globalParameter=g1", output.getText().split("\\r?\\n")[0]);
+    }
+
+    @Test
+    public void slotCountMismatch() throws Exception {
+        PreparedCommand prepared = this._parser.prepare(new String[] { "complex", "--param1=?", "--param2=?" });
+        assertBindError(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, prepared, "20");
+        assertBindError(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, prepared, "20", "a1", "a2");
+    }
+
+    @Test
+    public void invalidSlotValues() throws Exception {
+        PreparedCommand prepared = this._parser.prepare(new String[] { "complex", "--param1=?", "--param2=?" });
+        assertBindError(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, prepared, "5", "a1");
+        assertBindError(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, prepared, "20", "b1");
+        try {
+            prepared.setInt(1, 20);
+            fail("String slot accepted an int value");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_UNSUPPORTED_PARAMETER_TYPE, e.getErrorCode());
+        }
+        try {
+            prepared.setInt(2, 20);
+            fail("Unknown slot was bound");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_UNKNOWN_PARAMETER, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void unboundSlot() throws Exception {
+        PreparedCommand prepared = this._parser.prepare(new String[] { "complex", "--param1=?", "--param2=?" });
+        prepared.setInt(0, 20);
+        try {
+            prepared.toParsedCommand();
+            fail("Command with an unbound slot was created");
+        } catch (CmdException e) {
+            assertEquals(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, e.getErrorCode());
+            assertEquals("param2", e.getInvalidArgument());
+        }
+
+        prepared.clearSlots();
+        try {
+            prepared.toParsedCommand();
+            fail("Command with cleared slots was created");
+        } catch (CmdException e) {
+            assertEquals("param1", e.getInvalidArgument());
+        }
+    }
+
+    @Test
+    public void boundCommandsDoNotShareValues() throws Exception {
+        Collector collector = new Collector();
+        PreparedCommand prepared = new CmdParser(collector).prepare(new String[] { "collect", "--list=?", "--fixed=1,2" });
+        prepared.bind("a,b");
+        ParsedCommand first = prepared.toParsedCommand();
+        ParsedCommand second = prepared.toParsedCommand();
+
+        first.execute(collector, new CommandOutput());
+        second.execute(collector, new CommandOutput());
+        prepared.bind("a,b").execute(collector, new CommandOutput());
+        assertEquals(Arrays.asList("[a, b]:[1, 2]", "[a, b]:[1, 2]", "[a, b]:[1, 2]"), collector.Calls);
+    }
+
+    /**
+     * Executes the command and returns the last line of its output.
+     * @param command Command to execute
+     * @return Last line of the output
+     * @throws CmdException Thrown when the command failed
+     */
+    private String execute(ParsedCommand command) throws CmdException {
+        CommandOutput output = new CommandOutput();
+        command.execute(this._impl, output);
+        String[] lines = output.getText().split("\\r?\\n");
+        return lines[lines.length - 1];
+    }
+
+    /**
+     * Checks that binding of the values fails with the expected error code.
+     * @param code Expected error code
+     * @param prepared Prepared command
+     * @param values Values of the slots
+     */
+    private static void assertBindError(CmdExceptionCode code, PreparedCommand prepared, String... values) {
+        try {
+            prepared.bind(values);
+            fail("Values " + Arrays.toString(values) + " were bound");
+        } catch (CmdException e) {
+            assertEquals(code, e.getErrorCode());
+        }
+    }
+
+    /**
+     * Command line changing the values it receives.
+     */
+    public static class Collector {
+        /**
+         * Recorded calls with the received values.
+         */
+        List<String> Calls = new ArrayList<String>();
+
+        public void collect(
+                @Name(name = "list") ArrayList<String> list,
+                @Name(name = "fixed") int[] fixed) {
+            this.Calls.add(list + ":" + Arrays.toString(fixed));
+            list.clear();
+            fixed[0] = -1;
+        }
+    }
+}
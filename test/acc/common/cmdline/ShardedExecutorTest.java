@@ -0,0 +1,62 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.annotation.Name;
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the dispatch on worker processes.
+ */
+public class ShardedExecutorTest {
+    @Test
+    public void dispatchOnWorker() throws Exception {
+        ShardedExecutor executor = new ShardedExecutor(Commands.class, 1);
+        try {
+            DispatchResult[] results = executor.dispatchAll(Arrays.asList(new String[] { "echo", "--text=a" }, new String[] { "missing" }));
+            assertTrue(results[0].getMessage(), results[0].isSuccess());
+            assertEquals("a", results[0].getOutput());
+            assertEquals(CmdExceptionCode.DISPATCH_UNKNOWN_COMMAND, results[1].getErrorCode());
+        } finally {
+            assertEquals(0, executor.shutdown());
+        }
+    }
+
+    @Test
+    public void dispatchAfterShutdownIsRejected() throws Exception {
+        ShardedExecutor executor = new ShardedExecutor(Commands.class, 1);
+        assertEquals(0, executor.shutdown());
+
+        DispatchResult[] results = executor.dispatchAll(Arrays.<String[]>asList(new String[] { "echo", "--text=a" }));
+        assertEquals(CmdExceptionCode.DISPATCH_REJECTED, results[0].getErrorCode());
+
+        final List<CmdExceptionCode> codes = new ArrayList<CmdExceptionCode>();
+        long failedCount = executor.dispatchStream(new StringReader("echo --text=b\n"), new IBatchListener() {
+            @Override
+            public void lineCompleted(long lineNumber, String line, CmdException error) {
+                codes.add(error.getErrorCode());
+            }
+        });
+        assertEquals(1, failedCount);
+        assertEquals(Arrays.asList(CmdExceptionCode.DISPATCH_REJECTED), codes);
+
+        // Closing again only waits for the stopped workers
+        executor.close();
+    }
+
+    /**
+     * Command line dispatched by the workers.
+     */
+    public static class Commands {
+        @Name(name = "echo")
+        public void echo(@Name(name = "text") String text, CommandOutput output) {
+            output.print(text);
+        }
+    }
+}
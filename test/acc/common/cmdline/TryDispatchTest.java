@@ -0,0 +1,97 @@
+package acc.common.cmdline;
+
+import acc.common.cmdline.annotation.Name;
+import acc.common.cmdline.annotation.Required;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of the results returned by {@link CmdParser#tryDispatch(String[], DispatchOptions)}.
+ */
+public class TryDispatchTest {
+    /**
+     * Options capturing the output of the commands.
+     */
+    private static final DispatchOptions Capture = new DispatchOptions().setCaptureOutput(true);
+
+    /**
+     * Parser of the commands.
+     */
+    private CmdParser _parser;
+
+    /**
+     * Creates the parser for each test.
+     * @throws Exception Thrown when the definition of command line is invalid
+     */
+    @Before
+    public void setUp() throws Exception {
+        this._parser = new CmdParser(new Commands());
+    }
+
+    @Test
+    public void successWithCapturedOutput() {
+        DispatchResult result = this._parser.tryDispatch(new String[] { "greet", "--name=world" }, Capture);
+        assertTrue(result.getMessage(), result.isSuccess());
+        assertNull(result.getErrorCode());
+        assertEquals("Hello world", result.getOutput());
+    }
+
+    @Test
+    public void unknownCommandWithSuggestions() {
+        DispatchResult result = this._parser.tryDispatch(new String[] { "gret", "--name=world" }, Capture);
+        assertFalse(result.isSuccess());
+        assertEquals(CmdExceptionCode.DISPATCH_UNKNOWN_COMMAND, result.getErrorCode());
+        assertEquals("gret", result.getInvalidArgument());
+        assertTrue(result.getSuggestions().toString(), result.getSuggestions().contains("greet"));
+    }
+
+    @Test
+    public void invalidValue() {
+        DispatchResult result = this._parser.tryDispatch(new String[] { "repeat", "--count=many" }, Capture);
+        assertFalse(result.isSuccess());
+        assertEquals(CmdExceptionCode.DISPATCH_VALIDATION_ERROR, result.getErrorCode());
+    }
+
+    @Test
+    public void missingRequiredParameter() {
+        DispatchResult result = this._parser.tryDispatch(new String[] { "greet" }, Capture);
+        assertFalse(result.isSuccess());
+        assertEquals(CmdExceptionCode.DISPATCH_MISSING_REQUIRED_PARAMETER, result.getErrorCode());
+    }
+
+    @Test
+    public void commandFailureKeepsOutput() {
+        DispatchResult result = this._parser.tryDispatch(new String[] { "fail" }, Capture);
+        assertFalse(result.isSuccess());
+        assertEquals(CmdExceptionCode.DISPATCH_INVOKE_ERROR, result.getErrorCode());
+        assertEquals("reason", result.getInvalidArgument());
+        assertEquals("Command failed", result.getMessage());
+        assertEquals("partial", result.getOutput());
+    }
+
+    /**
+     * Command line of the tests.
+     */
+    public static class Commands {
+        @Name(name = "greet")
+        public void greet(@Name(name = "name") @Required String name, CommandOutput output) {
+            output.print("Hello " + name);
+        }
+
+        @Name(name = "repeat")
+        public void repeat(@Name(name = "count") int count, CommandOutput output) {
+            output.print(count);
+        }
+
+        @Name(name = "fail")
+        public void fail(CommandOutput output) throws CmdException {
+            output.print("partial");
+            throw new CmdException(CmdExceptionCode.DISPATCH_INVOKE_ERROR, "reason", "Command failed");
+        }
+    }
+}
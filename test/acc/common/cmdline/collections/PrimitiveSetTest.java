@@ -0,0 +1,105 @@
+package acc.common.cmdline.collections;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests of {@link IntSet} and {@link LongSet} against {@link HashSet}, mostly of removing values while iterating
+ * (removal shifts values of the probe sequence, which must be neither skipped nor returned twice).
+ */
+public class PrimitiveSetTest {
+    @Test
+    public void intSetIteratorRemove() {
+        Random random = new Random(30);
+        for (int round = 0; round < 2000; round++) {
+            IntSet set = new IntSet();
+            Set<Integer> expected = new HashSet<Integer>();
+            int count = random.nextInt(200);
+            for (int i = 0; i < count; i++) {
+                // Small range, so the probe sequences are long and wrap over the end of the table
+                int value = random.nextInt(400) - 20;
+                set.addInt(value);
+                expected.add(value);
+            }
+            checkIteratorRemove(set, expected, random);
+        }
+    }
+
+    @Test
+    public void longSetIteratorRemove() {
+        Random random = new Random(31);
+        for (int round = 0; round < 2000; round++) {
+            LongSet set = new LongSet();
+            Set<Long> expected = new HashSet<Long>();
+            int count = random.nextInt(200);
+            for (int i = 0; i < count; i++) {
+                long value = (random.nextInt(400) - 20) * 0x100000001L;
+                set.addLong(value);
+                expected.add(value);
+            }
+            checkIteratorRemove(set, expected, random);
+        }
+    }
+
+    @Test
+    public void bulkOperations() {
+        IntSet set = new IntSet();
+        for (int i = -50; i < 50; i++) {
+            set.addInt(i);
+        }
+        assertTrue(set.retainAll(Arrays.asList(-3, 0, 7, 1000)));
+        assertEquals(new HashSet<Integer>(Arrays.asList(-3, 0, 7)), set);
+        assertTrue(set.removeAll(Arrays.asList(0)));
+        assertEquals(new HashSet<Integer>(Arrays.asList(-3, 7)), set);
+
+        LongSet longSet = new LongSet();
+        for (long i = -50; i < 50; i++) {
+            longSet.addLong(i);
+        }
+        assertTrue(longSet.retainAll(Arrays.asList(-3L, 0L, 7L, 1000L)));
+        assertEquals(new HashSet<Long>(Arrays.asList(-3L, 0L, 7L)), longSet);
+        assertTrue(longSet.removeAll(Arrays.asList(7L)));
+        assertEquals(new HashSet<Long>(Arrays.asList(-3L, 0L)), longSet);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void removeWithoutNext() {
+        IntSet set = new IntSet();
+        set.addInt(1);
+        set.iterator().remove();
+    }
+
+    /**
+     * Iterates over the set, randomly removes the returned values and compares the result with the expected set.
+     * @param set Tested set
+     * @param expected Set with the same values
+     * @param random Random generator
+     */
+    private static <T> void checkIteratorRemove(Set<T> set, Set<T> expected, Random random) {
+        Set<T> returned = new HashSet<T>();
+        Set<T> removed = new HashSet<T>();
+        for (Iterator<T> iterator = set.iterator(); iterator.hasNext(); ) {
+            T value = iterator.next();
+            assertTrue("Value " + value + " returned twice", returned.add(value));
+            if (random.nextBoolean()) {
+                iterator.remove();
+                removed.add(value);
+            }
+        }
+        assertEquals(expected, returned);
+        expected.removeAll(removed);
+        assertEquals(expected, set);
+        assertEquals(expected.size(), set.size());
+        for (T value : removed) {
+            assertTrue(!set.contains(value));
+        }
+    }
+}